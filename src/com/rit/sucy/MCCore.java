@@ -39,10 +39,18 @@ import com.rit.sucy.economy.Economy;
 import com.rit.sucy.economy.EconomyPlugin;
 import com.rit.sucy.event.EquipListener;
 import com.rit.sucy.gui.MapListener;
+import com.rit.sucy.gui.MapScheme;
 import com.rit.sucy.items.DurabilityListener;
+import com.rit.sucy.player.PlayerGrid;
+import com.rit.sucy.player.PlayerGridTask;
+import com.rit.sucy.player.PlayerIdCache;
 import com.rit.sucy.player.PlayerUUIDs;
+import com.rit.sucy.reflect.ParticleBatch;
+import com.rit.sucy.reflect.ParticleBatchTask;
 import com.rit.sucy.reflect.Reflection;
+import com.rit.sucy.reflect.ReflectionListener;
 import com.rit.sucy.scoreboard.*;
+import com.rit.sucy.version.VersionListener;
 import com.rit.sucy.version.VersionManager;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.event.HandlerList;
@@ -61,10 +69,12 @@ public class MCCore extends JavaPlugin
 
     private CommentedConfig config;
 
-    private Economy     economy;
-    private CycleTask   cTask;
-    private UpdateTask  uTask;
-    private PlayerUUIDs idManager;
+    private Economy           economy;
+    private CycleTask         cTask;
+    private UpdateTask        uTask;
+    private PlayerGridTask    gTask;
+    private ParticleBatchTask pTask;
+    private PlayerUUIDs       idManager;
 
     // Settings
     private boolean chatEnabled;
@@ -91,7 +101,11 @@ public class MCCore extends JavaPlugin
         };
         getServer().dispatchCommand(new CommandLog(), "version");
 
+        new VersionListener(this);
         Reflection.init();
+        new ReflectionListener(this);
+        gTask = new PlayerGridTask(this);
+        pTask = new ParticleBatchTask(this);
         BoardManager.init();
 
         // Initialize libraries
@@ -155,7 +169,16 @@ public class MCCore extends JavaPlugin
     public void onDisable()
     {
         HandlerList.unregisterAll(this);
-        if (idManager != null) idManager.save();
+        Reflection.clearConnections();
+        Reflection.clearCache();
+        gTask.cancel();
+        pTask.cancel();
+        ParticleBatch.clear();
+        PlayerGrid.clear();
+        MapScheme.closeAll();
+        VersionManager.invalidateOnlinePlayers();
+        if (idManager != null) idManager.close();
+        PlayerIdCache.shutdown();
         for (Config config : configs.values())
             config.save();
         configs.clear();
@@ -28,12 +28,14 @@ package com.rit.sucy.chat;
 
 import com.rit.sucy.MCCore;
 import com.rit.sucy.config.Config;
+import com.rit.sucy.player.PlayerGrid;
 import com.rit.sucy.version.VersionManager;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
 import java.util.Hashtable;
+import java.util.List;
 
 /**
  * Main helper method for the chat resources including accessing
@@ -109,8 +111,10 @@ public class Chat
      */
     public static void sendMessage(String permission, String message)
     {
-        for (Player player : VersionManager.getOnlinePlayers())
+        List<Player> players = VersionManager.getOnlinePlayerList();
+        for (int i = 0; i < players.size(); i++)
         {
+            Player player = players.get(i);
             if (player.hasPermission(permission)) player.sendMessage(message);
         }
     }
@@ -143,14 +147,10 @@ public class Chat
         if (width < 0) point.setX(point.getX() + width);
         if (height < 0) point.setY(point.getY() + height);
         if (depth < 0) point.setZ(point.getZ() + depth);
-        for (Player player : VersionManager.getOnlinePlayers())
-        {
-            Location loc = player.getLocation();
-            if (loc.getX() >= point.getX() && loc.getY() >= point.getY() && loc.getZ() >= point.getZ()
-                && loc.getX() <= point.getX() + Math.abs(width) && loc.getY() <= point.getY() + Math.abs(height)
-                && loc.getZ() <= point.getZ() + Math.abs(depth))
-                player.sendMessage(message);
-        }
+        for (Player player : PlayerGrid.getPlayersInBox(point.getWorld(), point.getX(), point.getY(), point.getZ(),
+                                                        point.getX() + Math.abs(width), point.getY() + Math.abs(height),
+                                                        point.getZ() + Math.abs(depth)))
+            player.sendMessage(message);
     }
 
     /**
@@ -162,11 +162,7 @@ public class Chat
      */
     public static void sendMessage(Location center, int radius, boolean sphere, String message)
     {
-        for (Player player : VersionManager.getOnlinePlayers())
-        {
-            Location loc = player.getLocation();
-            if (!sphere) loc.setY(center.getY());
-            if (loc.distanceSquared(center) < radius * radius) player.sendMessage(message);
-        }
+        for (Player player : PlayerGrid.getNearbyPlayers(center, radius, sphere))
+            player.sendMessage(message);
     }
 }
@@ -0,0 +1,369 @@
+/**
+ * MCCore
+ * com.rit.sucy.economy.BalanceIndex
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.economy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>An ordered index of account balances for leaderboards, kept up
+ * to date as balances change rather than sorting every account on
+ * each query.</p>
+ * <p>The index is a skip list where each link also stores how many
+ * accounts it skips over, so updates, rank lookups and lookups by rank
+ * all take logarithmic time. Accounts are ordered by balance from
+ * highest to lowest, with ties broken by key.</p>
+ * <p>Wrap accounts in an IndexedAccount to keep the index updated
+ * automatically.</p>
+ */
+public class BalanceIndex
+{
+    private static final int    MAX_LEVEL   = 32;
+    private static final double PROMOTE     = 0.25;
+
+    private final HashMap<String, Node> nodes  = new HashMap<String, Node>();
+    private final Node                  head   = new Node(null, 0, MAX_LEVEL);
+    private final Random                random = new Random();
+
+    private int level = 1;
+
+    /**
+     * Retrieves the number of accounts in the index
+     *
+     * @return number of indexed accounts
+     */
+    public synchronized int size()
+    {
+        return nodes.size();
+    }
+
+    /**
+     * Checks whether or not an account is in the index
+     *
+     * @param key account key
+     *
+     * @return true if indexed, false otherwise
+     */
+    public synchronized boolean contains(String key)
+    {
+        return nodes.containsKey(key);
+    }
+
+    /**
+     * Retrieves the indexed balance of an account
+     *
+     * @param key account key
+     *
+     * @return indexed balance or 0 if not indexed
+     */
+    public synchronized double getBalance(String key)
+    {
+        Node node = nodes.get(key);
+        return node == null ? 0 : node.balance;
+    }
+
+    /**
+     * Adds an account to the index or updates its balance
+     *
+     * @param key     account key
+     * @param balance current balance of the account
+     */
+    public synchronized void update(String key, double balance)
+    {
+        Node existing = nodes.get(key);
+        if (existing != null)
+        {
+            if (existing.balance == balance) return;
+            nodes.remove(key);
+            delete(existing);
+        }
+        nodes.put(key, insert(key, balance));
+    }
+
+    /**
+     * Removes an account from the index
+     *
+     * @param key account key
+     */
+    public synchronized void remove(String key)
+    {
+        Node node = nodes.remove(key);
+        if (node != null) delete(node);
+    }
+
+    /**
+     * Clears all accounts from the index
+     */
+    public synchronized void clear()
+    {
+        nodes.clear();
+        for (int i = 0; i < MAX_LEVEL; i++)
+        {
+            head.next[i] = null;
+            head.width[i] = 0;
+        }
+        level = 1;
+    }
+
+    /**
+     * Retrieves the leaderboard rank of an account, where the
+     * account with the highest balance has rank 1
+     *
+     * @param key account key
+     *
+     * @return rank of the account or -1 if not indexed
+     */
+    public synchronized int getRank(String key)
+    {
+        Node node = nodes.get(key);
+        if (node == null) return -1;
+
+        int rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--)
+        {
+            while (x.next[i] != null && (x.next[i] == node || before(x.next[i], node.key, node.balance)))
+            {
+                rank += x.width[i];
+                x = x.next[i];
+            }
+            if (x == node) return rank;
+        }
+        return rank;
+    }
+
+    /**
+     * Retrieves the key of the account at the given rank
+     *
+     * @param rank rank starting from 1 for the highest balance
+     *
+     * @return account key or null if the rank is out of range
+     */
+    public synchronized String getKey(int rank)
+    {
+        if (rank < 1 || rank > nodes.size()) return null;
+
+        int traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--)
+        {
+            while (x.next[i] != null && traversed + x.width[i] <= rank)
+            {
+                traversed += x.width[i];
+                x = x.next[i];
+            }
+            if (traversed == rank) return x.key;
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the keys of the accounts with the highest balances
+     *
+     * @param count maximum number of accounts to retrieve
+     *
+     * @return account keys from highest to lowest balance
+     */
+    public synchronized List<String> getTop(int count)
+    {
+        return getRange(1, count);
+    }
+
+    /**
+     * Retrieves the keys of a page of the leaderboard
+     *
+     * @param rank  rank of the first account to retrieve, starting from 1
+     * @param count maximum number of accounts to retrieve
+     *
+     * @return account keys from highest to lowest balance
+     */
+    public synchronized List<String> getRange(int rank, int count)
+    {
+        ArrayList<String> result = new ArrayList<String>(Math.max(0, Math.min(count, nodes.size() - rank + 1)));
+        if (rank < 1 || rank > nodes.size()) return result;
+
+        // Skip to the node before the first one wanted
+        int traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--)
+        {
+            while (x.next[i] != null && traversed + x.width[i] < rank)
+            {
+                traversed += x.width[i];
+                x = x.next[i];
+            }
+        }
+
+        x = x.next[0];
+        while (x != null && result.size() < count)
+        {
+            result.add(x.key);
+            x = x.next[0];
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether or not a node comes before the given position in the index
+     *
+     * @param node    node to check
+     * @param key     key of the position
+     * @param balance balance of the position
+     *
+     * @return true if the node comes first, false otherwise
+     */
+    private static boolean before(Node node, String key, double balance)
+    {
+        return node.balance > balance || (node.balance == balance && node.key.compareTo(key) < 0);
+    }
+
+    /**
+     * Inserts a new node into the list
+     *
+     * @param key     account key
+     * @param balance account balance
+     *
+     * @return the inserted node
+     */
+    private Node insert(String key, double balance)
+    {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+
+        // Find the nodes preceding the new one on each level and their ranks
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--)
+        {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && before(x.next[i], key, balance))
+            {
+                rank[i] += x.width[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level)
+        {
+            for (int i = level; i < nodeLevel; i++)
+            {
+                rank[i] = 0;
+                update[i] = head;
+                update[i].width[i] = nodes.size();
+            }
+            level = nodeLevel;
+        }
+
+        // Link in the node, splitting the widths of the links it interrupts
+        Node node = new Node(key, balance, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++)
+        {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.width[i] = update[i].width[i] - (rank[0] - rank[i]);
+            update[i].width[i] = rank[0] - rank[i] + 1;
+        }
+
+        // Links passing over the new node now skip one more account
+        for (int i = nodeLevel; i < level; i++)
+        {
+            update[i].width[i]++;
+        }
+        return node;
+    }
+
+    /**
+     * Unlinks a node from the list
+     *
+     * @param node node to remove
+     */
+    private void delete(Node node)
+    {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--)
+        {
+            while (x.next[i] != null && before(x.next[i], node.key, node.balance))
+            {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        for (int i = 0; i < level; i++)
+        {
+            if (update[i].next[i] == node)
+            {
+                update[i].width[i] += node.width[i] - 1;
+                update[i].next[i] = node.next[i];
+            }
+            else update[i].width[i]--;
+        }
+
+        while (level > 1 && head.next[level - 1] == null)
+        {
+            level--;
+        }
+    }
+
+    /**
+     * Picks a level for a new node
+     *
+     * @return node level
+     */
+    private int randomLevel()
+    {
+        int result = 1;
+        while (result < MAX_LEVEL && random.nextDouble() < PROMOTE)
+        {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * A single account in the skip list
+     */
+    private static class Node
+    {
+        private final String key;
+        private final double balance;
+        private final Node[] next;
+        private final int[]  width;
+
+        private Node(String key, double balance, int level)
+        {
+            this.key = key;
+            this.balance = balance;
+            this.next = new Node[level];
+            this.width = new int[level];
+        }
+    }
+}
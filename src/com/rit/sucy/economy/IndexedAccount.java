@@ -0,0 +1,188 @@
+/**
+ * MCCore
+ * com.rit.sucy.economy.IndexedAccount
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.economy;
+
+import org.bukkit.entity.Player;
+
+/**
+ * <p>Wraps an account from an economy plugin so that every balance
+ * change made through it updates a BalanceIndex.</p>
+ * <p>Accounts are indexed under their owner's name unless a key
+ * is provided.</p>
+ */
+public class IndexedAccount implements Account
+{
+    private final Account      account;
+    private final BalanceIndex index;
+    private final String       key;
+
+    /**
+     * Wraps an account, indexing it under its owner's name
+     *
+     * @param account account to wrap
+     * @param index   index to keep updated
+     */
+    public IndexedAccount(Account account, BalanceIndex index)
+    {
+        this(account, index, account.getOwnerName());
+    }
+
+    /**
+     * Wraps an account, indexing it under the given key. The
+     * account's current balance is added to the index immediately.
+     *
+     * @param account account to wrap
+     * @param index   index to keep updated
+     * @param key     key to index the account under
+     */
+    public IndexedAccount(Account account, BalanceIndex index, String key)
+    {
+        this.account = account;
+        this.index = index;
+        this.key = key;
+        index.update(key, account.getBalance());
+    }
+
+    /**
+     * Retrieves the wrapped account
+     *
+     * @return wrapped account
+     */
+    public Account getAccount()
+    {
+        return account;
+    }
+
+    /**
+     * Retrieves the key the account is indexed under
+     *
+     * @return index key
+     */
+    public String getKey()
+    {
+        return key;
+    }
+
+    /**
+     * @return money in this account
+     */
+    @Override
+    public double getBalance()
+    {
+        return account.getBalance();
+    }
+
+    /**
+     * Checks if the account has at least the given amount
+     *
+     * @param amount amount
+     *
+     * @return true if the account has it, false otherwise
+     */
+    @Override
+    public boolean has(double amount)
+    {
+        return account.has(amount);
+    }
+
+    /**
+     * @param amount withdraws money from the account
+     *
+     * @return amount of money left in the account
+     */
+    @Override
+    public double withdraw(double amount)
+    {
+        double balance = account.withdraw(amount);
+        index.update(key, balance);
+        return balance;
+    }
+
+    /**
+     * @param amount adds money to the account
+     *
+     * @return amount of money left in the account
+     */
+    @Override
+    public double deposit(double amount)
+    {
+        double balance = account.deposit(amount);
+        index.update(key, balance);
+        return balance;
+    }
+
+    /**
+     * Transfers money into the target account, updating
+     * the indexed balance of both accounts
+     *
+     * @param target target account
+     * @param amount amount to transfer
+     *
+     * @return remaining balance
+     */
+    @Override
+    public double transfer(Account target, double amount)
+    {
+        Account other = target instanceof IndexedAccount ? ((IndexedAccount) target).account : target;
+        String otherKey = target instanceof IndexedAccount ? ((IndexedAccount) target).key : target.getOwnerName();
+
+        double balance = account.transfer(other, amount);
+        index.update(key, balance);
+        index.update(otherKey, other.getBalance());
+        return balance;
+    }
+
+    /**
+     * Sets the amount of money in the account
+     *
+     * @param amount new amount
+     */
+    @Override
+    public void setBalance(double amount)
+    {
+        account.setBalance(amount);
+        index.update(key, account.getBalance());
+    }
+
+    /**
+     * @return name of the player who owns the account
+     */
+    @Override
+    public String getOwnerName()
+    {
+        return account.getOwnerName();
+    }
+
+    /**
+     * @return the player who owns the account
+     */
+    @Override
+    public Player getOwner()
+    {
+        return account.getOwner();
+    }
+}
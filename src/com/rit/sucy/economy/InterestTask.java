@@ -0,0 +1,336 @@
+/**
+ * MCCore
+ * com.rit.sucy.economy.InterestTask
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.economy;
+
+import com.rit.sucy.config.Config;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.*;
+
+/**
+ * <p>Applies bank interest rates to the member accounts of registered
+ * banks once every accrual period.</p>
+ * <p>Accounts are processed in batches over several ticks so large banks
+ * don't stall a single tick. Positive balances earn the deposit rate and
+ * negative balances (loans) are charged the loan rate.</p>
+ * <p>The time of the last accrual for each bank is saved so periods missed
+ * while the server was down are applied, compounded, on the next run. The
+ * time is saved before the accounts are updated, so a crash part way
+ * through a batch can skip interest for the remaining accounts but never
+ * applies it twice. Cancelling the task finishes any accrual in progress
+ * first, so stopping the server cleanly doesn't skip any accounts.</p>
+ */
+public class InterestTask extends BukkitRunnable
+{
+    private final HashMap<String, BankEntry> banks   = new HashMap<String, BankEntry>();
+    private final ArrayDeque<Accrual>        pending = new ArrayDeque<Accrual>();
+
+    private final Config config;
+    private final long   period;
+    private final int    batchSize;
+
+    private long cycleTime;
+    private int  cycleAccounts;
+    private long lastDuration;
+    private int  lastAccounts;
+    private long maxBatchTime;
+
+    /**
+     * Starts the accrual task for a plugin
+     *
+     * @param plugin    plugin owning the banks
+     * @param period    length of an accrual period in milliseconds
+     * @param batchSize maximum number of accounts to update each tick
+     */
+    public InterestTask(JavaPlugin plugin, long period, int batchSize)
+    {
+        if (period <= 0) throw new IllegalArgumentException("Accrual period must be positive");
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+
+        this.config = new Config(plugin, "interest");
+        this.period = period;
+        this.batchSize = batchSize;
+        runTaskTimer(plugin, 1, 1);
+    }
+
+    /**
+     * Registers a bank to accrue interest. If the bank was never
+     * registered before, its first period starts now.
+     *
+     * @param key     unique key used to save accrual times for the bank
+     * @param bank    bank to accrue interest for
+     * @param members names of the members of the bank
+     */
+    public void register(String key, Bank bank, Collection<String> members)
+    {
+        ConfigurationSection data = config.getConfig();
+        long last = data.getLong(key, -1);
+        if (last < 0)
+        {
+            last = System.currentTimeMillis();
+            data.set(key, last);
+            config.saveConfig();
+        }
+        banks.put(key, new BankEntry(bank, new ArrayList<String>(members), last));
+    }
+
+    /**
+     * Stops accruing interest for a bank. Any accrual already in
+     * progress for the bank will still be finished.
+     *
+     * @param key key the bank was registered with
+     */
+    public void unregister(String key)
+    {
+        banks.remove(key);
+    }
+
+    /**
+     * Adds a member to a registered bank
+     *
+     * @param key  key the bank was registered with
+     * @param name member name
+     */
+    public void addMember(String key, String name)
+    {
+        BankEntry entry = banks.get(key);
+        if (entry != null && !entry.members.contains(name)) entry.members.add(name);
+    }
+
+    /**
+     * Removes a member from a registered bank
+     *
+     * @param key  key the bank was registered with
+     * @param name member name
+     */
+    public void removeMember(String key, String name)
+    {
+        BankEntry entry = banks.get(key);
+        if (entry != null) entry.members.remove(name);
+    }
+
+    /**
+     * Retrieves the total time spent updating accounts during the
+     * last completed accrual, summed across all of its batches
+     *
+     * @return duration in nanoseconds
+     */
+    public long getLastDuration()
+    {
+        return lastDuration;
+    }
+
+    /**
+     * Retrieves the number of accounts updated during the last completed accrual
+     *
+     * @return number of accounts updated
+     */
+    public int getLastAccountCount()
+    {
+        return lastAccounts;
+    }
+
+    /**
+     * Retrieves the longest time a single tick's batch has taken
+     *
+     * @return duration in nanoseconds
+     */
+    public long getMaxBatchTime()
+    {
+        return maxBatchTime;
+    }
+
+    /**
+     * Checks whether or not an accrual is currently being processed
+     *
+     * @return true if accounts are still waiting for interest, false otherwise
+     */
+    public boolean isAccruing()
+    {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Queues up due banks and processes the next batch of accounts
+     */
+    @Override
+    public void run()
+    {
+        if (pending.isEmpty())
+        {
+            queueDueBanks();
+            if (pending.isEmpty()) return;
+        }
+
+        process(batchSize);
+    }
+
+    /**
+     * Finishes any accrual in progress right away instead of
+     * spreading the remaining accounts over the next ticks. Call
+     * this or cancel() when the owning plugin is disabled, as the
+     * server stopping the plugin's tasks doesn't go through cancel().
+     */
+    public void flush()
+    {
+        if (!pending.isEmpty())
+        {
+            process(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Finishes any accrual in progress before stopping the task,
+     * as its period was already saved as applied
+     */
+    @Override
+    public synchronized void cancel()
+    {
+        flush();
+        super.cancel();
+    }
+
+    /**
+     * Updates the next accounts waiting for interest
+     *
+     * @param limit maximum number of accounts to update
+     */
+    private void process(int limit)
+    {
+        long start = System.nanoTime();
+        int processed = 0;
+        while (processed < limit && !pending.isEmpty())
+        {
+            Accrual accrual = pending.peek();
+            while (processed < limit && accrual.index < accrual.members.size())
+            {
+                accrue(accrual, accrual.members.get(accrual.index++));
+                processed++;
+            }
+            if (accrual.index >= accrual.members.size())
+            {
+                pending.poll();
+            }
+        }
+
+        long time = System.nanoTime() - start;
+        maxBatchTime = Math.max(maxBatchTime, time);
+        cycleTime += time;
+        cycleAccounts += processed;
+
+        if (pending.isEmpty())
+        {
+            lastDuration = cycleTime;
+            lastAccounts = cycleAccounts;
+            cycleTime = 0;
+            cycleAccounts = 0;
+        }
+    }
+
+    /**
+     * Queues an accrual for every bank with at least one full period
+     * passed since its last accrual
+     */
+    private void queueDueBanks()
+    {
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+        for (Map.Entry<String, BankEntry> entry : banks.entrySet())
+        {
+            BankEntry bank = entry.getValue();
+            long periods = (now - bank.last) / period;
+            if (periods <= 0) continue;
+
+            bank.last += periods * period;
+            config.getConfig().set(entry.getKey(), bank.last);
+            changed = true;
+
+            if (!bank.bank.supportsInterest() || bank.members.size() == 0) continue;
+
+            double deposit = Math.pow(1 + bank.bank.getDepositInterestRate() / 100, periods);
+            double loan = Math.pow(1 + bank.bank.getLoanInterestRate() / 100, periods);
+            pending.add(new Accrual(bank.bank, new ArrayList<String>(bank.members), deposit, loan));
+        }
+        if (changed) config.saveConfig();
+    }
+
+    /**
+     * Applies interest to a single member account
+     *
+     * @param accrual accrual being processed
+     * @param name    name of the member
+     */
+    private void accrue(Accrual accrual, String name)
+    {
+        if (!accrual.bank.hasAccount(name)) return;
+
+        Account account = accrual.bank.getAccount(name);
+        double balance = account.getBalance();
+        if (balance > 0) account.deposit(balance * (accrual.deposit - 1));
+        else if (balance < 0) account.withdraw(-balance * (accrual.loan - 1));
+    }
+
+    /**
+     * A registered bank and the time of its last accrual
+     */
+    private class BankEntry
+    {
+        private final Bank              bank;
+        private final ArrayList<String> members;
+        private long                    last;
+
+        private BankEntry(Bank bank, ArrayList<String> members, long last)
+        {
+            this.bank = bank;
+            this.members = members;
+            this.last = last;
+        }
+    }
+
+    /**
+     * An accrual in progress for a bank with the compounded
+     * growth factors for all periods being applied
+     */
+    private class Accrual
+    {
+        private final Bank              bank;
+        private final ArrayList<String> members;
+        private final double            deposit;
+        private final double            loan;
+        private int                     index;
+
+        private Accrual(Bank bank, ArrayList<String> members, double deposit, double loan)
+        {
+            this.bank = bank;
+            this.members = members;
+            this.deposit = deposit;
+            this.loan = loan;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * MCCore
+ * com.rit.sucy.economy.JournaledAccount
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.economy;
+
+import org.bukkit.entity.Player;
+
+/**
+ * <p>Wraps an account from an economy plugin so that every balance
+ * change made through it is written to a TransactionJournal.</p>
+ * <p>Accounts are journaled under their owner's name unless a key
+ * is provided, which should be done for bank member accounts so they
+ * don't collide with the member's personal account.</p>
+ */
+public class JournaledAccount implements Account
+{
+    private final Account            account;
+    private final TransactionJournal journal;
+    private final String             key;
+
+    /**
+     * Wraps an account, journaling it under its owner's name
+     *
+     * @param account account to wrap
+     * @param journal journal to write changes to
+     */
+    public JournaledAccount(Account account, TransactionJournal journal)
+    {
+        this(account, journal, account.getOwnerName());
+    }
+
+    /**
+     * Wraps an account, journaling it under the given key
+     *
+     * @param account account to wrap
+     * @param journal journal to write changes to
+     * @param key     key to record changes under
+     */
+    public JournaledAccount(Account account, TransactionJournal journal, String key)
+    {
+        this.account = account;
+        this.journal = journal;
+        this.key = key;
+    }
+
+    /**
+     * Retrieves the wrapped account
+     *
+     * @return wrapped account
+     */
+    public Account getAccount()
+    {
+        return account;
+    }
+
+    /**
+     * Retrieves the key the account is journaled under
+     *
+     * @return journal key
+     */
+    public String getKey()
+    {
+        return key;
+    }
+
+    /**
+     * @return money in this account
+     */
+    @Override
+    public double getBalance()
+    {
+        return account.getBalance();
+    }
+
+    /**
+     * Checks if the account has at least the given amount
+     *
+     * @param amount amount
+     *
+     * @return true if the account has it, false otherwise
+     */
+    @Override
+    public boolean has(double amount)
+    {
+        return account.has(amount);
+    }
+
+    /**
+     * @param amount withdraws money from the account
+     *
+     * @return amount of money left in the account
+     */
+    @Override
+    public double withdraw(double amount)
+    {
+        double balance = account.withdraw(amount);
+        journal.record(TransactionJournal.WITHDRAW, key, amount, balance);
+        return balance;
+    }
+
+    /**
+     * @param amount adds money to the account
+     *
+     * @return amount of money left in the account
+     */
+    @Override
+    public double deposit(double amount)
+    {
+        double balance = account.deposit(amount);
+        journal.record(TransactionJournal.DEPOSIT, key, amount, balance);
+        return balance;
+    }
+
+    /**
+     * Transfers money into the target account, journaling
+     * the new balance of both accounts
+     *
+     * @param target target account
+     * @param amount amount to transfer
+     *
+     * @return remaining balance
+     */
+    @Override
+    public double transfer(Account target, double amount)
+    {
+        Account other = target instanceof JournaledAccount ? ((JournaledAccount) target).account : target;
+        String otherKey = target instanceof JournaledAccount ? ((JournaledAccount) target).key : target.getOwnerName();
+
+        double balance = account.transfer(other, amount);
+        journal.record(TransactionJournal.TRANSFER, key, -amount, balance);
+        journal.record(TransactionJournal.TRANSFER, otherKey, amount, other.getBalance());
+        return balance;
+    }
+
+    /**
+     * Sets the amount of money in the account
+     *
+     * @param amount new amount
+     */
+    @Override
+    public void setBalance(double amount)
+    {
+        account.setBalance(amount);
+        journal.record(TransactionJournal.SET, key, amount, account.getBalance());
+    }
+
+    /**
+     * @return name of the player who owns the account
+     */
+    @Override
+    public String getOwnerName()
+    {
+        return account.getOwnerName();
+    }
+
+    /**
+     * @return the player who owns the account
+     */
+    @Override
+    public Player getOwner()
+    {
+        return account.getOwner();
+    }
+}
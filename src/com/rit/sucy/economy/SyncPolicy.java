@@ -0,0 +1,55 @@
+/**
+ * MCCore
+ * com.rit.sucy.economy.SyncPolicy
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.economy;
+
+/**
+ * <p>How often a TransactionJournal forces its records to disk</p>
+ */
+public enum SyncPolicy
+{
+
+    /**
+     * Every record is forced to disk before the mutation returns.
+     * Nothing is lost on a crash, but each transaction pays for a
+     * full disk sync.
+     */
+    ALWAYS,
+
+    /**
+     * Records are flushed to the OS as they are written and forced
+     * to disk once per sync interval, by the next record or by a
+     * background timer when no more arrive. A crash can lose at most
+     * the last interval of transactions.
+     */
+    INTERVAL,
+
+    /**
+     * Records are buffered and only written out when the buffer fills,
+     * the segment rotates, or the journal is flushed or closed.
+     */
+    NEVER
+}
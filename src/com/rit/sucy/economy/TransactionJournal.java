@@ -0,0 +1,583 @@
+/**
+ * MCCore
+ * com.rit.sucy.economy.TransactionJournal
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.economy;
+
+import org.bukkit.Bukkit;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>An append-only binary log of balance changes made through
+ * the economy API. Records are written to numbered segment files
+ * which rotate once they reach a maximum size, so a crash can
+ * only ever damage the tail of the newest segment.</p>
+ * <p>Each record stores the balance after the change, so replaying
+ * the journal is simply "last balance wins" for every account and
+ * is safe to repeat.</p>
+ * <p>Use snapshot() periodically to compact the journal and
+ * replay() or restore(Economy) on startup to recover balances.</p>
+ */
+public class TransactionJournal
+{
+    public static final byte DEPOSIT  = 0;
+    public static final byte WITHDRAW = 1;
+    public static final byte SET      = 2;
+    public static final byte TRANSFER = 3;
+
+    private static final int    MAGIC           = 0x4D434A31;
+    private static final String SEGMENT_PREFIX  = "journal-";
+    private static final String SEGMENT_SUFFIX  = ".bin";
+    private static final String SNAPSHOT_FILE   = "snapshot.bin";
+    private static final String SNAPSHOT_TEMP   = "snapshot.tmp";
+
+    private final File       folder;
+    private final SyncPolicy policy;
+    private final long       maxSegmentSize;
+    private final long       syncInterval;
+
+    private final Object                snapshotLock = new Object();
+    private final ByteArrayOutputStream recordBytes  = new ByteArrayOutputStream(64);
+    private final DataOutputStream      recordOut    = new DataOutputStream(recordBytes);
+
+    private ScheduledExecutorService syncTimer;
+    private FileOutputStream         fileOut;
+    private DataOutputStream         out;
+    private int                      segment;
+    private long                     lastSync;
+    private long                     records;
+    private boolean                  unsynced;
+
+    /**
+     * Opens a journal in the given folder, syncing every second and
+     * rotating segments once they reach 4MB
+     *
+     * @param folder folder to store the journal in
+     * @param policy how often to force records to disk
+     *
+     * @throws IOException when the journal folder cannot be written to
+     */
+    public TransactionJournal(File folder, SyncPolicy policy) throws IOException
+    {
+        this(folder, policy, 4 * 1024 * 1024, 1000);
+    }
+
+    /**
+     * Opens a journal in the given folder. A new segment is always
+     * started rather than appending to a segment left behind by a
+     * previous run, which may have a partially written record at the end.
+     *
+     * @param folder         folder to store the journal in
+     * @param policy         how often to force records to disk
+     * @param maxSegmentSize size in bytes after which a new segment is started
+     * @param syncInterval   milliseconds between syncs for the INTERVAL policy
+     *
+     * @throws IOException when the journal folder cannot be written to
+     */
+    public TransactionJournal(File folder, SyncPolicy policy, long maxSegmentSize, long syncInterval) throws IOException
+    {
+        this.folder = folder;
+        this.policy = policy;
+        this.maxSegmentSize = maxSegmentSize;
+        this.syncInterval = syncInterval;
+
+        folder.mkdirs();
+        ArrayList<Integer> segments = listSegments();
+        segment = segments.size() == 0 ? 0 : segments.get(segments.size() - 1);
+        openSegment(segment + 1);
+
+        // Sync on a timer as well so records aren't left unsynced while no new ones arrive
+        if (policy == SyncPolicy.INTERVAL)
+        {
+            syncTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "MCCore Journal Sync");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            syncTimer.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    syncIfNeeded();
+                }
+            }, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Retrieves the number of records written since the journal was opened
+     *
+     * @return number of records written
+     */
+    public synchronized long getRecordCount()
+    {
+        return records;
+    }
+
+    /**
+     * <p>Appends a record for a balance change</p>
+     * <p>The record is encoded in full before anything is written, so a
+     * record that can't be encoded is dropped without touching the
+     * journal. If writing fails part way, the journal moves on to a new
+     * segment so later records aren't stuck behind a torn one.</p>
+     *
+     * @param type    type of the change (DEPOSIT, WITHDRAW, SET or TRANSFER)
+     * @param key     key of the account that changed
+     * @param amount  amount involved in the change
+     * @param balance balance of the account after the change
+     */
+    public synchronized void record(byte type, String key, double amount, double balance)
+    {
+        recordBytes.reset();
+        try
+        {
+            recordOut.writeLong(System.currentTimeMillis());
+            recordOut.writeByte(type);
+            recordOut.writeUTF(key);
+            recordOut.writeDouble(amount);
+            recordOut.writeDouble(balance);
+        }
+        catch (IOException ex)
+        {
+            Bukkit.getLogger().severe("Unable to encode economy journal record for " + key + ": " + ex.getMessage());
+            return;
+        }
+
+        try
+        {
+            recordBytes.writeTo(out);
+            records++;
+
+            if (policy == SyncPolicy.ALWAYS)
+            {
+                sync();
+            }
+            else if (policy == SyncPolicy.INTERVAL)
+            {
+                out.flush();
+                unsynced = true;
+                if (System.currentTimeMillis() - lastSync >= syncInterval)
+                {
+                    sync();
+                }
+            }
+
+            if (out.size() >= maxSegmentSize)
+            {
+                rotate();
+            }
+        }
+        catch (IOException ex)
+        {
+            Bukkit.getLogger().severe("Failed to write economy journal record for " + key + ": " + ex.getMessage());
+            abandonSegment();
+        }
+    }
+
+    /**
+     * Writes out and syncs any buffered records
+     */
+    public synchronized void flush()
+    {
+        try
+        {
+            sync();
+        }
+        catch (IOException ex)
+        {
+            Bukkit.getLogger().severe("Failed to flush economy journal: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Flushes and closes the journal. No more records can be written afterwards.
+     */
+    public synchronized void close()
+    {
+        if (syncTimer != null)
+        {
+            syncTimer.shutdown();
+            syncTimer = null;
+        }
+        try
+        {
+            sync();
+            out.close();
+        }
+        catch (IOException ex)
+        {
+            Bukkit.getLogger().severe("Failed to close economy journal: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * <p>Compacts the journal by writing a snapshot of every balance
+     * recorded so far and deleting the segments it covers.</p>
+     * <p>The balances are read back from the journal itself rather
+     * than from the accounts. The current segment is closed first, so
+     * any mutation made while the snapshot is being written goes to a
+     * newer segment that is kept and replayed after the snapshot.</p>
+     *
+     * @throws IOException when the snapshot could not be written
+     */
+    public void snapshot() throws IOException
+    {
+        synchronized (snapshotLock)
+        {
+            // Start a fresh segment so everything before it can be covered by the snapshot
+            int covered;
+            synchronized (this)
+            {
+                covered = segment;
+                rotate();
+            }
+
+            // Closed segments don't change anymore so they can be read without the lock
+            HashMap<String, Double> balances = new HashMap<String, Double>();
+            int previous = readSnapshot(balances);
+            for (Integer index : listSegments())
+            {
+                if (index > previous && index <= covered)
+                {
+                    readSegment(index, balances);
+                }
+            }
+
+            File temp = new File(folder, SNAPSHOT_TEMP);
+            FileOutputStream fileStream = new FileOutputStream(temp);
+            DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(fileStream));
+            try
+            {
+                stream.writeInt(MAGIC);
+                stream.writeInt(covered);
+                stream.writeInt(balances.size());
+                for (Map.Entry<String, Double> entry : balances.entrySet())
+                {
+                    stream.writeUTF(entry.getKey());
+                    stream.writeDouble(entry.getValue());
+                }
+                stream.flush();
+                fileStream.getFD().sync();
+            }
+            finally
+            {
+                stream.close();
+            }
+
+            // Swap atomically so a crash never leaves the journal without a snapshot
+            Files.move(temp.toPath(), new File(folder, SNAPSHOT_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            for (Integer index : listSegments())
+            {
+                if (index <= covered)
+                {
+                    getSegmentFile(index).delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the latest snapshot and every journal segment after it,
+     * returning the last known balance of each account. Partially
+     * written records at the end of a segment are ignored.
+     *
+     * @return recovered balances by account key
+     *
+     * @throws IOException when the snapshot or a segment could not be read
+     */
+    public HashMap<String, Double> replay() throws IOException
+    {
+        synchronized (snapshotLock)
+        {
+            synchronized (this)
+            {
+                out.flush();
+            }
+
+            HashMap<String, Double> balances = new HashMap<String, Double>();
+            int covered = readSnapshot(balances);
+            for (Integer index : listSegments())
+            {
+                if (index > covered)
+                {
+                    readSegment(index, balances);
+                }
+            }
+            return balances;
+        }
+    }
+
+    /**
+     * Reads the latest snapshot into the map
+     *
+     * @param balances map to add the balances to
+     *
+     * @return index of the last segment the snapshot covers, or 0 if there isn't one
+     *
+     * @throws IOException when the snapshot could not be read
+     */
+    private int readSnapshot(HashMap<String, Double> balances) throws IOException
+    {
+        File snapshot = new File(folder, SNAPSHOT_FILE);
+        if (!snapshot.exists()) return 0;
+
+        DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)));
+        try
+        {
+            if (stream.readInt() != MAGIC)
+            {
+                throw new IOException("Invalid economy snapshot file");
+            }
+            int covered = stream.readInt();
+            int count = stream.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                balances.put(stream.readUTF(), stream.readDouble());
+            }
+            return covered;
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Applies the records of a segment to the map. Reading stops at the
+     * first record that can't be read or doesn't look valid, since a
+     * crash can leave a torn or zero-filled tail on a segment.
+     *
+     * @param index    index of the segment
+     * @param balances map to apply the records to
+     *
+     * @throws IOException when the segment could not be opened
+     */
+    private void readSegment(int index, HashMap<String, Double> balances) throws IOException
+    {
+        DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(getSegmentFile(index))));
+        try
+        {
+            if (stream.readInt() != MAGIC) return;
+            while (true)
+            {
+                long time = stream.readLong();
+                byte type = stream.readByte();
+                String key = stream.readUTF();
+                stream.readDouble();
+                double balance = stream.readDouble();
+                if (time <= 0 || type < DEPOSIT || type > TRANSFER || key.length() == 0)
+                {
+                    return;
+                }
+                balances.put(key, balance);
+            }
+        }
+        catch (EOFException ex)
+        {
+            // End of the segment, or a torn record from a crash
+        }
+        catch (UTFDataFormatException ex)
+        {
+            // Garbage left in a torn record
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * <p>Replays the journal and applies the recovered balances to the
+     * existing player accounts of the economy.</p>
+     * <p>Keys without a matching account are skipped rather than
+     * creating accounts for them, as they may be custom keys such as
+     * the ones used for bank member accounts. Use replay() to restore
+     * those yourself.</p>
+     *
+     * @param economy economy to restore balances to
+     *
+     * @return number of accounts restored
+     *
+     * @throws IOException when the journal could not be read
+     */
+    public int restore(Economy economy) throws IOException
+    {
+        HashMap<String, Double> balances = replay();
+        int restored = 0;
+        for (Map.Entry<String, Double> entry : balances.entrySet())
+        {
+            if (economy.hasAccount(entry.getKey()))
+            {
+                economy.getAccount(entry.getKey()).setBalance(entry.getValue());
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * Forces records to disk if any were written since the last sync.
+     * This is run by the sync timer of the INTERVAL policy.
+     */
+    private synchronized void syncIfNeeded()
+    {
+        if (!unsynced || syncTimer == null) return;
+        try
+        {
+            sync();
+        }
+        catch (IOException ex)
+        {
+            Bukkit.getLogger().severe("Failed to sync economy journal: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Flushes the buffered records and forces them to disk
+     *
+     * @throws IOException when the sync fails
+     */
+    private void sync() throws IOException
+    {
+        out.flush();
+        fileOut.getFD().sync();
+        lastSync = System.currentTimeMillis();
+        unsynced = false;
+    }
+
+    /**
+     * Closes the current segment and starts the next one
+     *
+     * @throws IOException when the new segment cannot be created
+     */
+    private void rotate() throws IOException
+    {
+        sync();
+        out.close();
+        openSegment(segment + 1);
+    }
+
+    /**
+     * Closes the current segment after a failed write and starts a new
+     * one. Anything left torn at the end of the old segment is skipped
+     * on replay, which then carries on with the new segment.
+     */
+    private void abandonSegment()
+    {
+        try
+        {
+            out.close();
+        }
+        catch (IOException ex)
+        {
+            // The segment is being dropped anyway
+        }
+        try
+        {
+            openSegment(segment + 1);
+        }
+        catch (IOException ex)
+        {
+            Bukkit.getLogger().severe("Failed to start a new economy journal segment: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Opens a new segment file for writing
+     *
+     * @param index index of the segment
+     *
+     * @throws IOException when the segment cannot be created
+     */
+    private void openSegment(int index) throws IOException
+    {
+        segment = index;
+        fileOut = new FileOutputStream(getSegmentFile(index));
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 8192));
+        out.writeInt(MAGIC);
+        sync();
+    }
+
+    /**
+     * Retrieves the file for a segment
+     *
+     * @param index index of the segment
+     *
+     * @return segment file
+     */
+    private File getSegmentFile(int index)
+    {
+        return new File(folder, SEGMENT_PREFIX + String.format("%08d", index) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Lists the indices of the segments in the journal folder in order
+     *
+     * @return sorted segment indices
+     */
+    private ArrayList<Integer> listSegments()
+    {
+        ArrayList<Integer> segments = new ArrayList<Integer>();
+        File[] files = folder.listFiles();
+        if (files == null) return segments;
+
+        for (File file : files)
+        {
+            String name = file.getName();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+            {
+                try
+                {
+                    segments.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                }
+                catch (NumberFormatException ex)
+                {
+                    // Not a segment file
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
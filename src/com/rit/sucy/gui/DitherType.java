@@ -0,0 +1,53 @@
+/**
+ * MCCore
+ * com.rit.sucy.gui.DitherType
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.gui;
+
+/**
+ * <p>Dithering methods available when importing images for maps</p>
+ */
+public enum DitherType
+{
+
+    /**
+     * Each pixel is matched to the closest palette color on its own.
+     * Gradients will show visible banding.
+     */
+    NONE,
+
+    /**
+     * The error from matching each pixel is spread to the pixels after
+     * it. Gives the best looking results for photos and gradients.
+     */
+    FLOYD_STEINBERG,
+
+    /**
+     * Each pixel is offset by a fixed 4x4 threshold pattern before
+     * matching. Softer than error diffusion, but the pattern is stable
+     * which works better for images that get redrawn or animated.
+     */
+    ORDERED
+}
@@ -0,0 +1,339 @@
+/**
+ * MCCore
+ * com.rit.sucy.gui.MapAnimation
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.gui;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * <p>A sequence of map images with a display time for each frame.
+ * Frames are converted to the map palette when the animation is
+ * created so playing it back is just swapping which image is drawn.</p>
+ * <p>Animations can be built from existing images or decoded from an
+ * animated GIF. Use a {@link MapSprite} to show one in a MapScene.</p>
+ */
+public class MapAnimation
+{
+    private static final String GIF_IMAGE_FORMAT  = "javax_imageio_gif_image_1.0";
+    private static final String GIF_STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+
+    // Browsers play GIFs with a tiny delay at 10 frames a second, so do the same
+    private static final int MIN_DELAY     = 20;
+    private static final int DEFAULT_DELAY = 100;
+
+    private MapImage[] frames;
+    private int[]      ends;
+
+    /**
+     * Creates an animation from a list of frames and how long
+     * each frame should be shown for
+     *
+     * @param frames frames of the animation
+     * @param delays time to show each frame in milliseconds
+     */
+    public MapAnimation(MapImage[] frames, int[] delays)
+    {
+        if (frames.length == 0 || frames.length != delays.length)
+        {
+            throw new IllegalArgumentException("Animations need at least one frame and a delay for each frame");
+        }
+
+        this.frames = frames;
+        this.ends = new int[delays.length];
+        int time = 0;
+        for (int i = 0; i < delays.length; i++)
+        {
+            time += Math.max(1, delays[i]);
+            ends[i] = time;
+        }
+    }
+
+    /**
+     * Creates an animation where every frame is
+     * shown for the same amount of time
+     *
+     * @param frames frames of the animation
+     * @param delay  time to show each frame in milliseconds
+     */
+    public MapAnimation(MapImage[] frames, int delay)
+    {
+        this(frames, fill(frames.length, delay));
+    }
+
+    /**
+     * Decodes an animated GIF from a file
+     *
+     * @param file   file to load from
+     * @param dither dithering to use when converting frames
+     *
+     * @return the loaded animation
+     *
+     * @throws IOException if the file couldn't be read
+     */
+    public static MapAnimation load(File file, DitherType dither) throws IOException
+    {
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        if (in == null) throw new IOException("Unable to read " + file);
+        try
+        {
+            return decode(in, dither);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Decodes an animated GIF from a URL
+     *
+     * @param url    URL to load from
+     * @param dither dithering to use when converting frames
+     *
+     * @return the loaded animation
+     *
+     * @throws IOException if the URL couldn't be read
+     */
+    public static MapAnimation load(URL url, DitherType dither) throws IOException
+    {
+        // Closing the image stream doesn't close the stream it wraps
+        InputStream stream = url.openStream();
+        try
+        {
+            ImageInputStream in = ImageIO.createImageInputStream(stream);
+            if (in == null) throw new IOException("Unable to read " + url);
+            try
+            {
+                return decode(in, dither);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Retrieves the number of frames in the animation
+     *
+     * @return frame count
+     */
+    public int getFrameCount()
+    {
+        return frames.length;
+    }
+
+    /**
+     * Retrieves a frame of the animation
+     *
+     * @param index frame index
+     *
+     * @return frame image
+     */
+    public MapImage getFrame(int index)
+    {
+        return frames[index];
+    }
+
+    /**
+     * Retrieves how long a frame is shown for
+     *
+     * @param index frame index
+     *
+     * @return frame time in milliseconds
+     */
+    public int getDelay(int index)
+    {
+        return index == 0 ? ends[0] : ends[index] - ends[index - 1];
+    }
+
+    /**
+     * Retrieves the time it takes to play through every frame once
+     *
+     * @return animation length in milliseconds
+     */
+    public int getDuration()
+    {
+        return ends[ends.length - 1];
+    }
+
+    /**
+     * Finds the frame shown at a point in the animation
+     *
+     * @param time time since the start of the animation in milliseconds
+     * @param loop whether or not the animation loops
+     *
+     * @return frame index
+     */
+    public int getFrameAt(long time, boolean loop)
+    {
+        if (time < 0) return 0;
+        if (time >= getDuration())
+        {
+            if (!loop) return frames.length - 1;
+            time %= getDuration();
+        }
+
+        // Binary search for the first frame ending after the time
+        int low = 0;
+        int high = ends.length - 1;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= time) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static int[] fill(int length, int value)
+    {
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++)
+        {
+            result[i] = value;
+        }
+        return result;
+    }
+
+    /**
+     * Decodes each frame of a GIF, compositing them onto a canvas the
+     * way a browser would before converting them to the map palette
+     */
+    private static MapAnimation decode(ImageInputStream in, DitherType dither) throws IOException
+    {
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("gif");
+        if (!readers.hasNext()) throw new IOException("No GIF reader available");
+        ImageReader reader = readers.next();
+        try
+        {
+            reader.setInput(in, false);
+            int count = reader.getNumImages(true);
+            if (count <= 0) throw new IOException("GIF has no frames");
+
+            // Canvas size comes from the logical screen, falling back to the first frame
+            int width = 0;
+            int height = 0;
+            IIOMetadata streamData = reader.getStreamMetadata();
+            if (streamData != null)
+            {
+                Node screen = child(streamData.getAsTree(GIF_STREAM_FORMAT), "LogicalScreenDescriptor");
+                width = attribute(screen, "logicalScreenWidth", 0);
+                height = attribute(screen, "logicalScreenHeight", 0);
+            }
+            if (width <= 0 || height <= 0)
+            {
+                width = reader.getWidth(0);
+                height = reader.getHeight(0);
+            }
+
+            BufferedImage canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = canvas.createGraphics();
+            ArrayList<MapImage> frames = new ArrayList<MapImage>(count);
+            int[] delays = new int[count];
+            for (int i = 0; i < count; i++)
+            {
+                BufferedImage frame = reader.read(i);
+                Node tree = reader.getImageMetadata(i).getAsTree(GIF_IMAGE_FORMAT);
+                Node descriptor = child(tree, "ImageDescriptor");
+                Node control = child(tree, "GraphicControlExtension");
+                int x = attribute(descriptor, "imageLeftPosition", 0);
+                int y = attribute(descriptor, "imageTopPosition", 0);
+                int delay = attribute(control, "delayTime", 0) * 10;
+                String disposal = control == null ? "none" : control.getAttributes().getNamedItem("disposalMethod").getNodeValue();
+
+                int[] previous = null;
+                if (disposal.equals("restoreToPrevious"))
+                {
+                    previous = canvas.getRGB(0, 0, width, height, null, 0, width);
+                }
+
+                g.drawImage(frame, x, y, null);
+                frames.add(MapImageImporter.convert(canvas, dither));
+                delays[i] = delay < MIN_DELAY ? DEFAULT_DELAY : delay;
+
+                if (disposal.equals("restoreToBackgroundColor"))
+                {
+                    g.setComposite(AlphaComposite.Clear);
+                    g.fillRect(x, y, frame.getWidth(), frame.getHeight());
+                    g.setComposite(AlphaComposite.SrcOver);
+                }
+                else if (previous != null)
+                {
+                    canvas.setRGB(0, 0, width, height, previous, 0, width);
+                }
+            }
+            g.dispose();
+
+            return new MapAnimation(frames.toArray(new MapImage[frames.size()]), delays);
+        }
+        finally
+        {
+            reader.dispose();
+        }
+    }
+
+    private static Node child(Node node, String name)
+    {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            if (child.getNodeName().equals(name)) return child;
+        }
+        return null;
+    }
+
+    private static int attribute(Node node, String name, int def)
+    {
+        if (node == null) return def;
+        Node value = node.getAttributes().getNamedItem(name);
+        if (value == null) return def;
+        try
+        {
+            return Integer.parseInt(value.getNodeValue());
+        }
+        catch (NumberFormatException ex)
+        {
+            return def;
+        }
+    }
+}
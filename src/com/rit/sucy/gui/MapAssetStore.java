@@ -0,0 +1,339 @@
+/**
+ * MCCore
+ * com.rit.sucy.gui.MapAssetStore
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.gui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * <p>Stores converted map images in a pack file on disk instead of
+ * keeping them all on the heap. The pack is memory mapped so reading
+ * an image is just a copy out of the OS file cache.</p>
+ * <p>Images are only loaded onto the heap the first time they are
+ * requested and the least recently used ones are dropped again once
+ * the loaded images go over the size limit. Menus that still hold
+ * onto an evicted image can keep using it, the store just stops
+ * keeping it around.</p>
+ * <p>The pack file is rebuilt each time a store is created for it,
+ * so it only needs to be writable and doesn't need to be kept. Each
+ * open store needs a file of its own, as creating a store for a file
+ * that is still in use truncates it under the other store.</p>
+ */
+public class MapAssetStore
+{
+    private final HashMap<String, Entry>          index  = new HashMap<String, Entry>();
+    private final LinkedHashMap<Entry, MapImage> loaded = new LinkedHashMap<Entry, MapImage>(16, 0.75f, true);
+
+    private File             file;
+    private RandomAccessFile access;
+    private FileChannel      channel;
+    private MappedByteBuffer mapped;
+
+    private long size;
+    private long maxLoaded = 4 << 20;
+    private long loadedBytes;
+    private long loads;
+    private long evictions;
+
+    /**
+     * Creates a new asset store using the given pack file,
+     * clearing anything that was in the file before
+     *
+     * @param file pack file to store images in
+     *
+     * @throws IOException if the file couldn't be opened
+     */
+    public MapAssetStore(File file) throws IOException
+    {
+        this.file = file;
+        if (file.getParentFile() != null)
+        {
+            file.getParentFile().mkdirs();
+        }
+        access = new RandomAccessFile(file, "rw");
+        access.setLength(0);
+        channel = access.getChannel();
+    }
+
+    /**
+     * Retrieves the pack file used by the store
+     *
+     * @return pack file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Writes an image to the pack, replacing any image
+     * previously stored under the same key
+     *
+     * @param key key to store the image under
+     * @param img image to store
+     *
+     * @throws IOException if the image couldn't be written
+     */
+    public synchronized void put(String key, MapImage img) throws IOException
+    {
+        byte[] data = img.getData();
+        int length = img.getWidth() * img.getHeight();
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        long position = size;
+        while (buffer.hasRemaining())
+        {
+            position += channel.write(buffer, position);
+        }
+
+        Entry entry = new Entry(size, img.getWidth(), img.getHeight(), img.offset);
+        size += length;
+        mapped = null;
+
+        Entry old = index.put(key, entry);
+        if (old != null)
+        {
+            unload(old);
+        }
+    }
+
+    /**
+     * Makes a key point to the same image as another key
+     * without storing the image a second time
+     *
+     * @param key    key to add
+     * @param target existing key to share the image of
+     *
+     * @return true if the target existed, false otherwise
+     */
+    public synchronized boolean alias(String key, String target)
+    {
+        Entry entry = index.get(target);
+        if (entry == null) return false;
+        index.put(key, entry);
+        return true;
+    }
+
+    /**
+     * Checks whether or not an image is stored under the key
+     *
+     * @param key image key
+     *
+     * @return true if stored, false otherwise
+     */
+    public synchronized boolean contains(String key)
+    {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Retrieves an image from the store, loading it from
+     * the pack if it isn't already loaded
+     *
+     * @param key image key
+     *
+     * @return the image or null if not stored or it couldn't be read
+     */
+    public synchronized MapImage get(String key)
+    {
+        Entry entry = index.get(key);
+        if (entry == null) return null;
+
+        MapImage img = loaded.get(entry);
+        if (img != null) return img;
+
+        try
+        {
+            if (mapped == null)
+            {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+        catch (IOException ex)
+        {
+            return null;
+        }
+
+        byte[] data = new byte[entry.width * entry.height];
+        ByteBuffer view = mapped.duplicate();
+        view.position((int) entry.position);
+        view.get(data);
+
+        img = new MapImage(entry.width, entry.height, data);
+        img.offset = entry.offset;
+        loaded.put(entry, img);
+        loadedBytes += data.length;
+        loads++;
+        trim();
+        return img;
+    }
+
+    /**
+     * Sets the maximum number of bytes of images to keep loaded
+     *
+     * @param bytes maximum loaded bytes
+     */
+    public synchronized void setMaxLoaded(long bytes)
+    {
+        maxLoaded = Math.max(0, bytes);
+        trim();
+    }
+
+    /**
+     * Retrieves the maximum number of bytes of images to keep loaded
+     *
+     * @return maximum loaded bytes
+     */
+    public synchronized long getMaxLoaded()
+    {
+        return maxLoaded;
+    }
+
+    /**
+     * Retrieves the number of image bytes currently on the heap
+     *
+     * @return loaded bytes
+     */
+    public synchronized long getLoadedBytes()
+    {
+        return loadedBytes;
+    }
+
+    /**
+     * Retrieves the number of image bytes written to the pack
+     *
+     * @return stored bytes
+     */
+    public synchronized long getStoredBytes()
+    {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of images currently loaded
+     *
+     * @return loaded image count
+     */
+    public synchronized int getLoadedCount()
+    {
+        return loaded.size();
+    }
+
+    /**
+     * Retrieves the number of times an image was read from the pack
+     *
+     * @return number of loads
+     */
+    public synchronized long getLoads()
+    {
+        return loads;
+    }
+
+    /**
+     * Retrieves the number of images dropped to stay under the limit
+     *
+     * @return number of evictions
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Drops all loaded images from the heap. They will be
+     * loaded again from the pack the next time they are used.
+     */
+    public synchronized void evictAll()
+    {
+        loaded.clear();
+        loadedBytes = 0;
+    }
+
+    /**
+     * Closes the pack file. The store can't be used after this.
+     */
+    public synchronized void close()
+    {
+        evictAll();
+        index.clear();
+        mapped = null;
+        try
+        {
+            access.close();
+        }
+        catch (IOException ex)
+        {
+            // Nothing left to do with the file
+        }
+    }
+
+    private void unload(Entry entry)
+    {
+        MapImage img = loaded.remove(entry);
+        if (img != null)
+        {
+            loadedBytes -= img.getWidth() * img.getHeight();
+        }
+    }
+
+    private void trim()
+    {
+        Iterator<MapImage> iterator = loaded.values().iterator();
+        while (loadedBytes > maxLoaded && iterator.hasNext())
+        {
+            MapImage img = iterator.next();
+            loadedBytes -= img.getWidth() * img.getHeight();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Location and size of an image in the pack
+     */
+    private static class Entry
+    {
+        private final long position;
+        private final int  width;
+        private final int  height;
+        private final int  offset;
+
+        private Entry(long position, int width, int height, int offset)
+        {
+            this.position = position;
+            this.width = width;
+            this.height = height;
+            this.offset = offset;
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.map.MapCanvas;
 import org.bukkit.map.MapView;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 
 /**
@@ -48,9 +49,19 @@ import java.lang.reflect.Method;
  */
 public class MapBuffer extends MapImage
 {
-    private Object worldMap;
-    private Method flagDirty;
-    private Method flagDirty2;
+    private Object       worldMap;
+    private Method       flagDirty;
+    private Method       flagDirty2;
+    private MethodHandle setBuffer;
+    private Class<?>     canvasClass;
+
+    // Copy of the data as of the last draw to the canvas
+    private final byte[] sent = new byte[128 * 128];
+    private boolean fullRefresh = true;
+
+    private int  pixelsSent;
+    private long totalPixelsSent;
+    private long framesSent;
 
     protected final int[] bounds;
     protected boolean dirty = true;
@@ -108,13 +119,172 @@ public class MapBuffer extends MapImage
     }
 
     /**
-     * Efficiently draws the buffer to the canvas
+     * Retrieves the number of pixels sent by the last draw to the canvas
+     *
+     * @return pixels sent last frame
+     */
+    public int getPixelsSent()
+    {
+        return pixelsSent;
+    }
+
+    /**
+     * Retrieves the total number of pixels sent to the canvas
+     *
+     * @return total pixels sent
+     */
+    public long getTotalPixelsSent()
+    {
+        return totalPixelsSent;
+    }
+
+    /**
+     * Retrieves the number of frames that sent any pixels to the canvas
+     *
+     * @return frames sent
+     */
+    public long getFramesSent()
+    {
+        return framesSent;
+    }
+
+    /**
+     * <p>Retrieves the byte data of the buffer.</p>
+     * <p>Changes made to the data directly can't be tracked, so this
+     * marks the whole buffer as dirty. The next draw still only sends
+     * the pixels that actually differ from what was last sent. If the
+     * array is kept and written to again after a draw, call this again
+     * so the new changes are picked up.</p>
+     *
+     * @return byte data of the buffer
+     */
+    @Override
+    public byte[] getData()
+    {
+        markDirty(0, 0, 127, 127);
+        return super.getData();
+    }
+
+    /**
+     * Forces the whole buffer to be sent on the next draw, such as
+     * when the canvas may have been changed by something else
+     */
+    public void refresh()
+    {
+        fullRefresh = true;
+        markDirty(0, 0, 127, 127);
+    }
+
+    /**
+     * Expands the dirty bounds to include the given region
+     *
+     * @param x1 left edge of the region
+     * @param y1 top edge of the region
+     * @param x2 right edge of the region (inclusive)
+     * @param y2 bottom edge of the region (inclusive)
+     */
+    @Override
+    protected void markDirty(int x1, int y1, int x2, int y2)
+    {
+        if (x1 > x2 || y1 > y2) return;
+        if (dirty)
+        {
+            bounds[0] = Math.min(bounds[0], x1);
+            bounds[1] = Math.min(bounds[1], y1);
+            bounds[2] = Math.max(bounds[2], x2);
+            bounds[3] = Math.max(bounds[3], y2);
+        }
+        else
+        {
+            bounds[0] = x1;
+            bounds[1] = y1;
+            bounds[2] = x2;
+            bounds[3] = y2;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Checks whether or not the next draw would send any pixels
+     *
+     * @return true if any pixels changed since the last draw, false otherwise
+     */
+    public boolean hasChanges()
+    {
+        if (!dirty) return false;
+        if (fullRefresh || shrinkBounds()) return true;
+        dirty = false;
+        return false;
+    }
+
+    /**
+     * Shrinks the dirty bounds down to the pixels that actually
+     * differ from what was last sent. Clearing and redrawing the
+     * buffer every frame touches everything, but usually only
+     * changes a small part of it.
+     *
+     * @return true if any pixels changed, false otherwise
+     */
+    private boolean shrinkBounds()
+    {
+        byte[] data = super.getData();
+        int minX = 128, minY = 128, maxX = -1, maxY = -1;
+        for (int j = bounds[1]; j <= bounds[3]; j++)
+        {
+            int row = j << 7;
+            for (int i = bounds[0]; i <= bounds[2]; i++)
+            {
+                if (data[row + i] != sent[row + i])
+                {
+                    if (i < minX) minX = i;
+                    if (i > maxX) maxX = i;
+                    minY = Math.min(minY, j);
+                    maxY = j;
+                }
+            }
+        }
+        if (maxX < 0) return false;
+
+        bounds[0] = minX;
+        bounds[1] = minY;
+        bounds[2] = maxX;
+        bounds[3] = maxY;
+        return true;
+    }
+
+    /**
+     * Sets the canvas's buffer directly to this image's data. The setter
+     * is only looked up again if a different type of canvas is used.
+     *
+     * @param canvas canvas to set the buffer of
+     *
+     * @throws Throwable if the canvas doesn't have a buffer to set
+     */
+    private void applyBuffer(MapCanvas canvas) throws Throwable
+    {
+        if (canvas.getClass() != canvasClass)
+        {
+            canvasClass = canvas.getClass();
+            setBuffer = Reflection.getSetter(canvasClass, "buffer");
+        }
+        if (setBuffer == null)
+            throw new IllegalStateException("Canvas has no buffer field");
+        setBuffer.invoke(canvas, super.getData());
+    }
+
+    /**
+     * Efficiently draws the buffer to the canvas, only flagging
+     * the region that changed since the last draw
      *
      * @param canvas canvas to draw to
      */
     public void drawTo(MapCanvas canvas)
     {
+        pixelsSent = 0;
         if (!this.dirty) return;
+        this.dirty = false;
+        if (!fullRefresh && !shrinkBounds()) return;
+        fullRefresh = false;
 
         // Try a much faster way of setting the data
         boolean fast = false;
@@ -127,10 +297,10 @@ public class MapBuffer extends MapImage
                 flagDirty.invoke(worldMap, bounds[2], bounds[3]);
 
                 // Apply the buffer data
-                Reflection.setValue(canvas, "buffer", getData());
+                applyBuffer(canvas);
                 fast = true;
             }
-            catch (Exception ex)
+            catch (Throwable ex)
             {
                 // Drawing failed to work, use normal method instead
                 flagDirty = null;
@@ -147,10 +317,10 @@ public class MapBuffer extends MapImage
                 flagDirty2.invoke(worldMap, 1, bounds[1], bounds[3]);
 
                 // Apply the buffer data
-                Reflection.setValue(canvas, "buffer", getData());
+                applyBuffer(canvas);
                 fast = true;
             }
-            catch (Exception ex)
+            catch (Throwable ex)
             {
                 // Didn't work, use normal method instead
                 flagDirty2 = null;
@@ -163,14 +333,25 @@ public class MapBuffer extends MapImage
             // Just set each pixel individually
             // Not terrible since images are pre-processed
             // (about 500 times faster), but still not great.
-            byte[] data = getData();
-            for (int i = bounds[0]; i < bounds[2]; i++)
+            byte[] data = super.getData();
+            for (int i = bounds[0]; i <= bounds[2]; i++)
             {
-                for (int j = bounds[1]; j < bounds[3]; j++)
+                for (int j = bounds[1]; j <= bounds[3]; j++)
                 {
-                    canvas.setPixel(i, j, data[i]);
+                    canvas.setPixel(i, j, data[i + (j << 7)]);
                 }
             }
         }
+
+        // Remember what was sent for the next comparison
+        byte[] data = super.getData();
+        int width = bounds[2] - bounds[0] + 1;
+        for (int j = bounds[1]; j <= bounds[3]; j++)
+        {
+            System.arraycopy(data, (j << 7) + bounds[0], sent, (j << 7) + bounds[0], width);
+        }
+        pixelsSent = width * (bounds[3] - bounds[1] + 1);
+        totalPixelsSent += pixelsSent;
+        framesSent++;
     }
 }
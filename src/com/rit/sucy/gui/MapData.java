@@ -88,18 +88,24 @@ public class MapData extends MapRenderer
             return;
         }
 
-        // Enable instant drawing rather than over time
+        // Draw the menu, only sending the map if anything changed
         if (firstPass)
         {
+            MapMenu menu = getMenu(player);
+            if (!MapRenderScheduler.isDue(player, menu)) return;
+
+            long start = System.nanoTime();
+            menu.render(buffer, player);
+            MapRenderScheduler.rendered(player, menu, System.nanoTime() - start);
+            if (!buffer.hasChanges()) return;
+
+            // Enable instant drawing rather than over time
             firstPass = false;
             player.sendMap(mapView);
             return;
         }
         firstPass = true;
 
-        // Draw the menu
-        getMenu(player).render(buffer, player);
-
         // Draw to the canvas
         buffer.drawTo(mapCanvas);
     }
@@ -173,6 +179,7 @@ public class MapData extends MapRenderer
         MapMenu.setSelection(player, 0);
         MapMenu.getScene(player).clear();
         menu.setup(player);
+        MapRenderScheduler.invalidate(player);
     }
 
     /**
@@ -183,5 +190,6 @@ public class MapData extends MapRenderer
     public void clear(Player player)
     {
         current.remove(player.getName());
+        MapRenderScheduler.clear(player);
     }
 }
\ No newline at end of file
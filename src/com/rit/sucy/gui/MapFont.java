@@ -26,19 +26,24 @@
  */
 package com.rit.sucy.gui;
 
-import org.bukkit.Bukkit;
-import org.bukkit.util.Vector;
-
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.HashMap;
 
 /**
- * Represents a font that can more efficiently draw to a map canvas
+ * Represents a font that can more efficiently draw to a map canvas.
+ * The printable ASCII range is rasterized once into an atlas when
+ * the font is created so drawing text never has to go through AWT.
+ * Other characters are rasterized the first time they are used.
  */
 public class MapFont
 {
+    private static final int ATLAS_START = 32;
+    private static final int ATLAS_END   = 126;
+    private static final int MAX_SIZE    = 32;
+
+    private final MapChar[]                   atlas = new MapChar[256];
     private final HashMap<Character, MapChar> chars = new HashMap<Character, MapChar>();
     private Font font;
     private int  space;
@@ -53,6 +58,18 @@ public class MapFont
     {
         this.font = font;
         this.space = space;
+
+        BufferedImage buffer = new BufferedImage(MAX_SIZE, MAX_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = buffer.createGraphics();
+        g.setFont(font);
+        for (char c = ATLAS_START; c <= ATLAS_END; c++)
+        {
+            if (font.canDisplay(c))
+            {
+                atlas[c] = render(c, buffer, g);
+            }
+        }
+        g.dispose();
     }
 
     /**
@@ -99,77 +116,108 @@ public class MapFont
     }
 
     /**
-     * Gets data for a character from the font. If the character is not initialized,
-     * it will be initialized first.
+     * Gets data for a character from the font. Printable ASCII characters
+     * come straight from the atlas built when the font was created. Any
+     * other character is initialized the first time it is requested.
      *
      * @param c character to get the data of
      *
-     * @return character data for the font
+     * @return character data for the font or null if the font can't display it
      */
     public MapChar getChar(char c)
     {
+        if (c < atlas.length && atlas[c] != null) return atlas[c];
         if (!font.canDisplay(c)) return null;
-        if (!chars.containsKey(c))
+
+        MapChar result = chars.get(c);
+        if (result == null)
         {
-            if (c == '.') {
-                chars.put(c, new MapChar(new boolean[]{ true }, 1, 1, 0));
-            }
+            BufferedImage buffer = new BufferedImage(MAX_SIZE, MAX_SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = buffer.createGraphics();
+            g.setFont(font);
+            result = render(c, buffer, g);
+            g.dispose();
+            chars.put(c, result);
+        }
+        return result;
+    }
 
-            else
+    /**
+     * Rasterizes a single character into row bit masks
+     *
+     * @param c      character to render
+     * @param buffer reusable buffer to draw into
+     * @param g      graphics of the buffer with the font applied
+     *
+     * @return character data
+     */
+    private MapChar render(char c, BufferedImage buffer, Graphics2D g)
+    {
+        if (c == '.')
+        {
+            return new MapChar(new int[] { 1 }, 1, 1, 0);
+        }
+
+        String str = String.valueOf(c);
+        Rectangle2D bounds = font.createGlyphVector(g.getFontRenderContext(), str).getPixelBounds(g.getFontRenderContext(), 0, 0);
+        int w = (int) bounds.getWidth();
+        int h = (int) bounds.getHeight();
+        if (bounds.getWidth() <= 0 || bounds.getHeight() <= 0 || bounds.getWidth() > MAX_SIZE || bounds.getHeight() > MAX_SIZE || w == 0 || h == 0)
+        {
+            return new MapChar(new int[] { 0 }, 1, 1, 0);
+        }
+
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, MAX_SIZE, MAX_SIZE);
+        g.setComposite(AlphaComposite.SrcOver);
+        g.drawString(str, 0, -(int) bounds.getY());
+
+        int[] pixels = buffer.getRGB(0, 0, w, h, null, 0, w);
+        int[] rows = new int[h];
+        for (int j = 0; j < h; j++)
+        {
+            int bits = 0;
+            for (int i = 0; i < w; i++)
             {
-                BufferedImage buffer = new BufferedImage(32, 32, 2);
-                Graphics2D g = buffer.createGraphics();
-                g.setFont(font);
-                Rectangle2D bounds = font.createGlyphVector(g.getFontRenderContext(), c + "").getPixelBounds(g.getFontRenderContext(), 0, 0);
-                if (bounds.getWidth() <= 0 || bounds.getHeight() <= 0 || bounds.getWidth() > 32 || bounds.getHeight() > 32) {
-                    chars.put(c, new MapChar(new boolean[] { false }, 1, 1, 0));
-                }
-                else
+                if ((pixels[j * w + i] & 0xFF0000) != 0)
                 {
-                    g.drawString(c + "", 0, -(int) bounds.getY());
-                    boolean[] data = new boolean[(int) (bounds.getWidth() * bounds.getHeight())];
-                    int[] pixels = new int[data.length * 4];
-                    buffer.getData().getPixels(0, 0, (int) bounds.getWidth(), (int) bounds.getHeight(), pixels);
-                    for (int j = 0; j < bounds.getHeight(); j++)
-                    {
-                        for (int i = 0; i < bounds.getWidth(); i++)
-                        {
-                            data[(j * (int) bounds.getWidth()) + i] = pixels[(j * 4 * (int) bounds.getWidth()) + i * 4] > 0;
-                        }
-                    }
-                    chars.put(c, new MapChar(data, (int) bounds.getWidth(), (int) bounds.getHeight(), (int) bounds.getY()));
+                    bits |= 1 << i;
                 }
             }
+            rows[j] = bits;
         }
-        return chars.get(c);
+        return new MapChar(rows, w, h, (int) bounds.getY());
     }
 
     /**
-     * Represents the per-pixel data of a character
+     * Represents the per-pixel data of a character. Each row is
+     * stored as a bit mask where bit i is set when the pixel in
+     * column i is filled.
      */
     class MapChar
     {
-        private boolean[] data;
-        private int       width;
-        private int       height;
-        private int       base;
+        private int[] rows;
+        private int   width;
+        private int   height;
+        private int   base;
 
-        private MapChar(boolean[] data, int w, int h, int b)
+        private MapChar(int[] rows, int w, int h, int b)
         {
-            this.data = data;
+            this.rows = rows;
             this.width = w;
             this.height = h;
             this.base = b;
         }
 
         /**
-         * Retrieves the pixel data of the character
+         * Retrieves the pixel data of the character as one
+         * bit mask per row
          *
-         * @return pixel data
+         * @return pixel rows
          */
-        public boolean[] getData()
+        public int[] getRows()
         {
-            return data;
+            return rows;
         }
 
         /**
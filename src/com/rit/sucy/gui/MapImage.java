@@ -88,6 +88,20 @@ public class MapImage
         this(size[0], size[1]);
     }
 
+    /**
+     * Wraps already converted map data as an image
+     *
+     * @param width  width of the image
+     * @param height height of the image
+     * @param data   map palette data of the image
+     */
+    MapImage(int width, int height, byte[] data)
+    {
+        this.data = data;
+        this.width = width;
+        this.height = height;
+    }
+
     /**
      * Initializes a new MapImage from an external URL,
      * converting it to a format that works better with
@@ -155,6 +169,7 @@ public class MapImage
     public void clear()
     {
         Arrays.fill(data, (byte) 0);
+        markDirty(0, 0, width - 1, height - 1);
     }
 
     /**
@@ -165,8 +180,21 @@ public class MapImage
     public void fill(byte color)
     {
         Arrays.fill(data, color);
+        markDirty(0, 0, width - 1, height - 1);
     }
 
+    /**
+     * Called with the region affected by each drawing operation so
+     * subclasses can track which parts of the image have changed.
+     * Does nothing by default.
+     *
+     * @param x1 left edge of the region
+     * @param y1 top edge of the region
+     * @param x2 right edge of the region (inclusive)
+     * @param y2 bottom edge of the region (inclusive)
+     */
+    protected void markDirty(int x1, int y1, int x2, int y2) { }
+
     /**
      * Draws an image onto this image
      *
@@ -198,6 +226,7 @@ public class MapImage
                 }
             }
         }
+        markDirty(posX, posY, maxX - 1, maxY - 1);
     }
 
     /**
@@ -213,24 +242,43 @@ public class MapImage
      */
     public int drawString(MapFont font, byte color, String str, int x, int y)
     {
+        int minX = Math.max(0, x);
+        int minY = height;
+        int maxY = -1;
         for (int i = 0; i < str.length() && x < width; i++)
         {
             MapFont.MapChar c = font.getChar(str.charAt(i));
-            boolean[] data = c.getData();
-            for (int j = 0; j < c.getWidth(); j++)
+            minY = Math.min(minY, y + c.getBase());
+            maxY = Math.max(maxY, y + c.getBase() + c.getHeight() - 1);
+
+            // Clip the glyph's columns against the image edges once
+            int mask = -1;
+            if (x < 0)
+            {
+                mask = x <= -32 ? 0 : mask & ~((1 << -x) - 1);
+            }
+            if (x + c.getWidth() > width)
+            {
+                mask &= (1 << (width - x)) - 1;
+            }
+
+            int[] rows = c.getRows();
+            int top = y + c.getBase();
+            int start = Math.max(0, -top);
+            int end = Math.min(c.getHeight(), height - top);
+            for (int k = start; k < end; k++)
             {
-                int a = j + x;
-                for (int k = 0; k < c.getHeight(); k++)
+                int bits = rows[k] & mask;
+                int row = x + (top + k) * width;
+                while (bits != 0)
                 {
-                    int b = k + y + c.getBase();
-                    if (a >= 0 && a < width && b >= 0 && b < height && data[j + k * c.getWidth()])
-                    {
-                        this.data[a + b * width] = color;
-                    }
+                    this.data[row + Integer.numberOfTrailingZeros(bits)] = color;
+                    bits &= bits - 1;
                 }
             }
             x += c.getWidth() + font.getSpace();
         }
+        markDirty(minX, Math.max(0, minY), Math.min(width, x) - 1, Math.min(height - 1, maxY));
         return x;
     }
 
@@ -332,6 +380,9 @@ public class MapImage
         c(79, 1, 0), c(96, 1, 0), c(112, 2, 0), c(59, 1, 0)
     };
 
+    // Palette lookup using the top 6 bits of each channel, built once from the colors above
+    private static final byte[] lookup = buildLookup();
+
     // Color code conversion
     private static final HashMap<Character, Byte> colorCodes = new HashMap<Character, Byte>()
     {{
@@ -369,23 +420,75 @@ public class MapImage
 
     /**
      * Gets the weighted difference between two colors for
-     * determining the similarity between them
+     * determining the similarity between them. The weights are
+     * scaled up by 512 so the whole calculation can be done
+     * using integers.
      *
-     * @param c1 first color to compare
-     * @param c2 second color to compare
+     * @param r1 red channel of the first color
+     * @param g1 green channel of the first color
+     * @param b1 blue channel of the first color
+     * @param r2 red channel of the second color
+     * @param g2 green channel of the second color
+     * @param b2 blue channel of the second color
      *
      * @return the weighted similarity value between the two
      */
-    private static double getDistance(Color c1, Color c2)
+    static int getDistance(int r1, int g1, int b1, int r2, int g2, int b2)
+    {
+        int rsum = r1 + r2;
+        int r = r1 - r2;
+        int g = g1 - g2;
+        int b = b1 - b2;
+        return (1024 + rsum) * r * r + 2048 * g * g + (1534 - rsum) * b * b;
+    }
+
+    /**
+     * Builds the palette lookup table, matching the center of
+     * each 4x4x4 block of RGB values to the closest palette color
+     *
+     * @return palette lookup table
+     */
+    private static byte[] buildLookup()
+    {
+        byte[] result = new byte[1 << 18];
+        for (int i = 0; i < result.length; i++)
+        {
+            int r = ((i >> 10) & 0xFC) | 2;
+            int g = ((i >> 4) & 0xFC) | 2;
+            int b = ((i << 2) & 0xFC) | 2;
+            result[i] = findClosest(r, g, b);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the closest palette color by checking every color
+     * in the palette. This is slow, so it is only used when
+     * building the lookup table.
+     *
+     * @param r red channel
+     * @param g green channel
+     * @param b blue channel
+     *
+     * @return closest palette color
+     */
+    static byte findClosest(int r, int g, int b)
     {
-        double rmean = (c1.getRed() + c2.getRed()) * 0.5;
-        double r = c1.getRed() - c2.getRed();
-        double g = c1.getGreen() - c2.getGreen();
-        int b = c1.getBlue() - c2.getBlue();
-        double weightR = 2.0 + rmean * 0.00390625;
-        double weightG = 4.0;
-        double weightB = 2.0 + (255.0 - rmean) * 0.00390625;
-        return weightR * r * r + weightG * g * g + weightB * b * b;
+        int index = 0;
+        int best = Integer.MAX_VALUE;
+
+        for (int i = 4; i < colors.length; i++)
+        {
+            Color color = colors[i];
+            int distance = getDistance(r, g, b, color.getRed(), color.getGreen(), color.getBlue());
+            if (distance < best)
+            {
+                best = distance;
+                index = i;
+            }
+        }
+
+        return (byte) (index < 128 ? index : index - 256);
     }
 
     /**
@@ -408,7 +511,7 @@ public class MapImage
         byte[] result = new byte[temp.getWidth() * temp.getHeight()];
         for (int i = 0; i < pixels.length; i++)
         {
-            result[i] = matchColor(new Color(pixels[i], true));
+            result[i] = matchColor(pixels[i]);
         }
         return result;
     }
@@ -423,23 +526,23 @@ public class MapImage
      */
     public static byte matchColor(Color color)
     {
-        if (color.getAlpha() < 128) return 0;
-
-        int index = 0;
-        double best = Double.MAX_VALUE;
-
-        for (int i = 4; i < colors.length; i++)
-        {
-            double distance = getDistance(color, colors[i]);
-            if (distance < best)
-            {
-                best = distance;
-                index = i;
-            }
-
-        }
+        return matchColor(color.getRGB());
+    }
 
-        return (byte) (index < 128 ? index : index - 256);
+    /**
+     * Gets the closest color to the provided ARGB value that
+     * is available for the map canvas. Colors are matched using
+     * a lookup table rather than searching the palette, so this
+     * is cheap enough to call for every pixel of an image.
+     *
+     * @param argb color to convert in ARGB format
+     *
+     * @return map palette color closest to the original
+     */
+    public static byte matchColor(int argb)
+    {
+        if ((argb >>> 24) < 128) return 0;
+        return lookup[((argb >> 6) & 0x3F000) | ((argb >> 4) & 0xFC0) | ((argb >> 2) & 0x3F)];
     }
 
     /**
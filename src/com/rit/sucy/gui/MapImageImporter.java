@@ -0,0 +1,404 @@
+/**
+ * MCCore
+ * com.rit.sucy.gui.MapImageImporter
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.gui;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Imports images into map format with optional dithering. Images
+ * are converted in 128x128 tiles which are processed in parallel, so
+ * large images load much faster than through the MapImage constructors.</p>
+ * <p>Use loadTiles to split an image up into one MapImage per map
+ * for wall displays, or load to get the whole image as a single
+ * MapImage.</p>
+ * <p>Floyd-Steinberg dithering spreads error within each tile, so
+ * the result is identical whether an image is loaded whole or as tiles.</p>
+ */
+public class MapImageImporter
+{
+    public static final int TILE_SIZE = 128;
+
+    // 4x4 Bayer threshold matrix for ordered dithering
+    private static final int[] BAYER = new int[] {
+        0, 8, 2, 10,
+        12, 4, 14, 6,
+        3, 11, 1, 9,
+        15, 7, 13, 5
+    };
+
+    private static ForkJoinPool pool;
+
+    /**
+     * Loads an image from a file as a single MapImage
+     *
+     * @param file   file to load from
+     * @param dither dithering to apply
+     *
+     * @return converted image
+     *
+     * @throws IOException when the file cannot be read as an image
+     */
+    public static MapImage load(File file, DitherType dither) throws IOException
+    {
+        return convert(read(ImageIO.read(file), file.getName()), dither);
+    }
+
+    /**
+     * Loads an image from a URL as a single MapImage
+     *
+     * @param url    URL to load from
+     * @param dither dithering to apply
+     *
+     * @return converted image
+     *
+     * @throws IOException when the URL cannot be read as an image
+     */
+    public static MapImage load(URL url, DitherType dither) throws IOException
+    {
+        return convert(read(ImageIO.read(url), url.toString()), dither);
+    }
+
+    /**
+     * Loads an image from a file, splitting it into map-sized tiles
+     *
+     * @param file   file to load from
+     * @param dither dithering to apply
+     *
+     * @return tiles of the image as [row][column]
+     *
+     * @throws IOException when the file cannot be read as an image
+     */
+    public static MapImage[][] loadTiles(File file, DitherType dither) throws IOException
+    {
+        return convertTiles(read(ImageIO.read(file), file.getName()), dither);
+    }
+
+    /**
+     * Loads an image from a URL, splitting it into map-sized tiles
+     *
+     * @param url    URL to load from
+     * @param dither dithering to apply
+     *
+     * @return tiles of the image as [row][column]
+     *
+     * @throws IOException when the URL cannot be read as an image
+     */
+    public static MapImage[][] loadTiles(URL url, DitherType dither) throws IOException
+    {
+        return convertTiles(read(ImageIO.read(url), url.toString()), dither);
+    }
+
+    /**
+     * Converts an image to a single MapImage
+     *
+     * @param image  image to convert
+     * @param dither dithering to apply
+     *
+     * @return converted image
+     */
+    public static MapImage convert(Image image, DitherType dither)
+    {
+        BufferedImage buffered = toBuffered(image);
+        int width = buffered.getWidth();
+        int height = buffered.getHeight();
+        int[] pixels = buffered.getRGB(0, 0, width, height, null, 0, width);
+        byte[] data = new byte[width * height];
+
+        ArrayList<TileTask> tasks = new ArrayList<TileTask>();
+        for (int y = 0; y < height; y += TILE_SIZE)
+        {
+            for (int x = 0; x < width; x += TILE_SIZE)
+            {
+                int w = Math.min(TILE_SIZE, width - x);
+                int h = Math.min(TILE_SIZE, height - y);
+                tasks.add(new TileTask(pixels, width, x, y, w, h, data, x + y * width, width, dither));
+            }
+        }
+        run(tasks);
+
+        return new MapImage(width, height, data);
+    }
+
+    /**
+     * Converts an image into map-sized tiles. Tiles along the right
+     * and bottom edges are padded with transparent pixels when the
+     * image size is not a multiple of 128.
+     *
+     * @param image  image to convert
+     * @param dither dithering to apply
+     *
+     * @return tiles of the image as [row][column]
+     */
+    public static MapImage[][] convertTiles(Image image, DitherType dither)
+    {
+        BufferedImage buffered = toBuffered(image);
+        int width = buffered.getWidth();
+        int height = buffered.getHeight();
+        int[] pixels = buffered.getRGB(0, 0, width, height, null, 0, width);
+
+        int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        MapImage[][] tiles = new MapImage[rows][columns];
+
+        ArrayList<TileTask> tasks = new ArrayList<TileTask>();
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                int x = column * TILE_SIZE;
+                int y = row * TILE_SIZE;
+                int w = Math.min(TILE_SIZE, width - x);
+                int h = Math.min(TILE_SIZE, height - y);
+                byte[] data = new byte[TILE_SIZE * TILE_SIZE];
+                tiles[row][column] = new MapImage(TILE_SIZE, TILE_SIZE, data);
+                tasks.add(new TileTask(pixels, width, x, y, w, h, data, 0, TILE_SIZE, dither));
+            }
+        }
+        run(tasks);
+
+        return tiles;
+    }
+
+    /**
+     * Validates an image that was read in
+     *
+     * @param image image that was read
+     * @param name  name of the source for error messages
+     *
+     * @return the image
+     *
+     * @throws IOException when the image could not be read
+     */
+    private static BufferedImage read(BufferedImage image, String name) throws IOException
+    {
+        if (image == null) throw new IOException("Unsupported image format: " + name);
+        return image;
+    }
+
+    /**
+     * Gets a buffered version of an image to read pixels from
+     *
+     * @param image image to convert
+     *
+     * @return buffered image
+     */
+    private static BufferedImage toBuffered(Image image)
+    {
+        if (image instanceof BufferedImage) return (BufferedImage) image;
+
+        BufferedImage buffered = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = buffered.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return buffered;
+    }
+
+    /**
+     * Runs the tile tasks on the shared pool, waiting for them all to finish
+     *
+     * @param tasks tasks to run
+     */
+    private static void run(final ArrayList<TileTask> tasks)
+    {
+        if (tasks.size() == 1)
+        {
+            tasks.get(0).compute();
+            return;
+        }
+        getPool().invoke(new RecursiveAction()
+        {
+            @Override
+            protected void compute()
+            {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the pool used for converting tiles, creating it if needed
+     *
+     * @return conversion pool
+     */
+    private static synchronized ForkJoinPool getPool()
+    {
+        if (pool == null)
+        {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    /**
+     * Clamps a color channel to the valid range
+     *
+     * @param value channel value
+     *
+     * @return clamped value
+     */
+    private static int clamp(int value)
+    {
+        return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+
+    /**
+     * Converts one tile of the source image
+     */
+    private static class TileTask extends RecursiveAction
+    {
+        private final int[]      pixels;
+        private final int        sourceWidth;
+        private final int        x;
+        private final int        y;
+        private final int        width;
+        private final int        height;
+        private final byte[]     out;
+        private final int        offset;
+        private final int        stride;
+        private final DitherType dither;
+
+        private TileTask(int[] pixels, int sourceWidth, int x, int y, int width, int height,
+                         byte[] out, int offset, int stride, DitherType dither)
+        {
+            this.pixels = pixels;
+            this.sourceWidth = sourceWidth;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.out = out;
+            this.offset = offset;
+            this.stride = stride;
+            this.dither = dither;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (dither == DitherType.FLOYD_STEINBERG) diffuse();
+            else match();
+        }
+
+        /**
+         * Matches each pixel on its own, applying the ordered
+         * dither threshold if enabled
+         */
+        private void match()
+        {
+            boolean ordered = dither == DitherType.ORDERED;
+            for (int j = 0; j < height; j++)
+            {
+                int source = x + (y + j) * sourceWidth;
+                int target = offset + j * stride;
+                for (int i = 0; i < width; i++)
+                {
+                    int argb = pixels[source + i];
+                    if (ordered && (argb >>> 24) >= 128)
+                    {
+                        int shift = BAYER[((j & 3) << 2) | (i & 3)] * 2 - 15;
+                        int r = clamp(((argb >> 16) & 0xFF) + shift);
+                        int g = clamp(((argb >> 8) & 0xFF) + shift);
+                        int b = clamp((argb & 0xFF) + shift);
+                        argb = 0xFF000000 | (r << 16) | (g << 8) | b;
+                    }
+                    out[target + i] = MapImage.matchColor(argb);
+                }
+            }
+        }
+
+        /**
+         * Matches each pixel, spreading the difference to the
+         * following pixels using Floyd-Steinberg weights
+         */
+        private void diffuse()
+        {
+            // Errors are stored times 16 for the current and next row with
+            // one pixel of padding on each side
+            int rowSize = (width + 2) * 3;
+            int[] current = new int[rowSize];
+            int[] next = new int[rowSize];
+
+            for (int j = 0; j < height; j++)
+            {
+                int source = x + (y + j) * sourceWidth;
+                int target = offset + j * stride;
+                for (int i = 0; i < width; i++)
+                {
+                    int argb = pixels[source + i];
+                    if ((argb >>> 24) < 128)
+                    {
+                        out[target + i] = 0;
+                        continue;
+                    }
+
+                    int e = (i + 1) * 3;
+                    int r = clamp(((argb >> 16) & 0xFF) + (current[e] >> 4));
+                    int g = clamp(((argb >> 8) & 0xFF) + (current[e + 1] >> 4));
+                    int b = clamp((argb & 0xFF) + (current[e + 2] >> 4));
+
+                    byte match = MapImage.matchColor(0xFF000000 | (r << 16) | (g << 8) | b);
+                    out[target + i] = match;
+
+                    Color color = MapImage.getColor(match);
+                    spread(current, next, e, r - color.getRed());
+                    spread(current, next, e + 1, g - color.getGreen());
+                    spread(current, next, e + 2, b - color.getBlue());
+                }
+
+                int[] temp = current;
+                current = next;
+                next = temp;
+                Arrays.fill(next, 0);
+            }
+        }
+
+        /**
+         * Spreads the error of one channel to the neighboring pixels
+         *
+         * @param current errors for the current row
+         * @param next    errors for the next row
+         * @param index   index of the pixel channel
+         * @param error   error to spread
+         */
+        private void spread(int[] current, int[] next, int index, int error)
+        {
+            current[index + 3] += error * 7;
+            next[index - 3] += error * 3;
+            next[index] += error * 5;
+            next[index + 3] += error;
+        }
+    }
+}
@@ -128,6 +128,9 @@ public class MapListener implements Listener
             // Otherwise it was left
             else menu.onLeft(event.getPlayer());
         }
+
+        // Menus update their scene while rendering, so render right away to show the input
+        MapRenderScheduler.invalidate(event.getPlayer());
     }
 
     /**
@@ -147,6 +150,7 @@ public class MapListener implements Listener
         {
             event.setCancelled(true);
             data.getMenu(event.getPlayer()).onSelect(event.getPlayer());
+            MapRenderScheduler.invalidate(event.getPlayer());
         }
     }
 
@@ -167,6 +171,7 @@ public class MapListener implements Listener
         {
             data.getMenu(event.getPlayer()).onBack(event.getPlayer());
             data.back(event.getPlayer());
+            MapRenderScheduler.invalidate(event.getPlayer());
         }
     }
 
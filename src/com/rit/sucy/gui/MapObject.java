@@ -42,6 +42,7 @@ public class MapObject
     private int lastX = 0;
     private int lastY = 0;
     private boolean lastVisible = false;
+    private boolean changed = false;
 
     /**
      * Initializes the MapObject at the given coordinates
@@ -88,6 +89,28 @@ public class MapObject
         return img.getHeight();
     }
 
+    /**
+     * Retrieves the image drawn for this object
+     *
+     * @return object image
+     */
+    public MapImage getImage() {
+        return img;
+    }
+
+    /**
+     * Changes the image drawn for this object, flagging it
+     * for an update if it is a different image
+     *
+     * @param img new image to draw
+     */
+    public void setImage(MapImage img) {
+        if (this.img != img) {
+            this.img = img;
+            this.changed = true;
+        }
+    }
+
     /**
      * Hides the object, no longer drawing it each update
      */
@@ -141,7 +164,7 @@ public class MapObject
      * @return true if required, false otherwise
      */
     public boolean isDirty() {
-        return (first && visible) || (x != lastX) || (y != lastY) || (visible != lastVisible);
+        return (first && visible) || (changed && (visible || lastVisible)) || (x != lastX) || (y != lastY) || (visible != lastVisible);
     }
 
     /**
@@ -184,6 +207,7 @@ public class MapObject
      */
     public void clean() {
         first = false;
+        changed = false;
         lastX = x;
         lastY = y;
         lastVisible = visible;
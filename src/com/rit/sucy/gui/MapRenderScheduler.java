@@ -0,0 +1,232 @@
+/**
+ * MCCore
+ * com.rit.sucy.gui.MapRenderScheduler
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.gui;
+
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * <p>Decides when each player's map menu is rendered. Every player
+ * is given a target frame rate and their renders are offset from
+ * each other so they don't all land on the same tick.</p>
+ * <p>Menus are rendered at the target frame rate, but the map is only
+ * sent to the player when the render changed any pixels.</p>
+ * <p>Render times are tracked for each menu to help find slow menus.</p>
+ */
+public class MapRenderScheduler
+{
+    private static final HashMap<String, PlayerState> players = new HashMap<String, PlayerState>();
+    private static final HashMap<MapMenu, RenderStats> stats  = new HashMap<MapMenu, RenderStats>();
+    private static final Random                        random = new Random();
+
+    private static int defaultFps = 10;
+
+    /**
+     * Sets the default target frame rate for players. This is
+     * capped at 20 as renders only happen once per tick.
+     *
+     * @param fps target frames per second
+     */
+    public static void setDefaultFps(int fps)
+    {
+        defaultFps = Math.max(1, Math.min(20, fps));
+    }
+
+    /**
+     * Retrieves the default target frame rate for players
+     *
+     * @return target frames per second
+     */
+    public static int getDefaultFps()
+    {
+        return defaultFps;
+    }
+
+    /**
+     * Sets the target frame rate for a single player
+     *
+     * @param player player to set the frame rate for
+     * @param fps    target frames per second
+     */
+    public static void setFps(Player player, int fps)
+    {
+        getState(player).interval = 1000 / Math.max(1, Math.min(20, fps));
+    }
+
+    /**
+     * Forces the player's menu to render as soon as possible, such as
+     * after switching menus
+     *
+     * @param player player to render for
+     */
+    public static void invalidate(Player player)
+    {
+        PlayerState state = players.get(player.getName());
+        if (state != null)
+        {
+            state.next = 0;
+        }
+    }
+
+    /**
+     * Clears the scheduling data for a player
+     *
+     * @param player player to clear
+     */
+    public static void clear(Player player)
+    {
+        players.remove(player.getName());
+    }
+
+    /**
+     * Checks whether or not a player's menu should be rendered now
+     *
+     * @param player player viewing the menu
+     * @param menu   menu being viewed
+     *
+     * @return true if it should be rendered, false otherwise
+     */
+    public static boolean isDue(Player player, MapMenu menu)
+    {
+        return System.currentTimeMillis() >= getState(player).next;
+    }
+
+    /**
+     * Records that a player's menu was rendered
+     *
+     * @param player player the menu was rendered for
+     * @param menu   menu that was rendered
+     * @param time   time the render took in nanoseconds
+     */
+    public static void rendered(Player player, MapMenu menu, long time)
+    {
+        PlayerState state = getState(player);
+        state.last = System.currentTimeMillis();
+        state.next = state.last + state.interval;
+
+        RenderStats menuStats = stats.get(menu);
+        if (menuStats == null)
+        {
+            menuStats = new RenderStats();
+            stats.put(menu, menuStats);
+        }
+        menuStats.count++;
+        menuStats.total += time;
+        menuStats.max = Math.max(menuStats.max, time);
+    }
+
+    /**
+     * Retrieves the number of times a menu has been rendered
+     *
+     * @param menu menu to check
+     *
+     * @return number of renders
+     */
+    public static long getRenderCount(MapMenu menu)
+    {
+        RenderStats menuStats = stats.get(menu);
+        return menuStats == null ? 0 : menuStats.count;
+    }
+
+    /**
+     * Retrieves the average time it takes to render a menu
+     *
+     * @param menu menu to check
+     *
+     * @return average render time in nanoseconds
+     */
+    public static long getAverageRenderTime(MapMenu menu)
+    {
+        RenderStats menuStats = stats.get(menu);
+        return menuStats == null || menuStats.count == 0 ? 0 : menuStats.total / menuStats.count;
+    }
+
+    /**
+     * Retrieves the longest time a render of a menu has taken
+     *
+     * @param menu menu to check
+     *
+     * @return max render time in nanoseconds
+     */
+    public static long getMaxRenderTime(MapMenu menu)
+    {
+        RenderStats menuStats = stats.get(menu);
+        return menuStats == null ? 0 : menuStats.max;
+    }
+
+    /**
+     * Clears all tracked render times
+     */
+    public static void resetStats()
+    {
+        stats.clear();
+    }
+
+    /**
+     * Gets the scheduling data for a player, creating it if needed. New
+     * players start at a random point in the interval so renders for
+     * players who open menus together are spread out.
+     *
+     * @param player player to get the data for
+     *
+     * @return scheduling data
+     */
+    private static PlayerState getState(Player player)
+    {
+        PlayerState state = players.get(player.getName());
+        if (state == null)
+        {
+            state = new PlayerState();
+            state.interval = 1000 / defaultFps;
+            state.next = System.currentTimeMillis() + random.nextInt((int) state.interval);
+            players.put(player.getName(), state);
+        }
+        return state;
+    }
+
+    /**
+     * Render timing for a single player
+     */
+    private static class PlayerState
+    {
+        private long interval;
+        private long next;
+        private long last;
+    }
+
+    /**
+     * Render times for a single menu
+     */
+    private static class RenderStats
+    {
+        private long count;
+        private long total;
+        private long max;
+    }
+}
@@ -52,6 +52,45 @@ public class MapScene
         ordered.add(obj);
     }
 
+    /**
+     * Adds a text label to the scene. The rendered text is shared
+     * through the {@link MapStringCache} so labels that are recreated
+     * each time a menu opens don't need to be drawn again.
+     *
+     * @param key   access key for the label
+     * @param font  font to render with
+     * @param color color of the text
+     * @param text  text to display
+     * @param x     horizontal position
+     * @param y     vertical position
+     *
+     * @return the added scene object
+     */
+    public MapObject addText(String key, MapFont font, byte color, String text, int x, int y)
+    {
+        MapObject obj = new MapObject(MapStringCache.get(font, color, text), x, y);
+        add(key, obj);
+        return obj;
+    }
+
+    /**
+     * Changes the text of a label added through {@link #addText},
+     * reusing a cached sprite when one exists for the new text
+     *
+     * @param key   access key for the label
+     * @param font  font to render with
+     * @param color color of the text
+     * @param text  text to display
+     */
+    public void setText(String key, MapFont font, byte color, String text)
+    {
+        MapObject obj = items.get(key);
+        if (obj != null)
+        {
+            obj.setImage(MapStringCache.get(font, color, text));
+        }
+    }
+
     /**
      * Retrieves an object from the scene by key
      *
@@ -63,6 +102,31 @@ public class MapScene
         return items.get(key);
     }
 
+    /**
+     * Checks whether or not the scene has any objects in it
+     *
+     * @return true if empty, false otherwise
+     */
+    public boolean isEmpty()
+    {
+        return items.size() == 0;
+    }
+
+    /**
+     * Checks whether or not any object in the scene has changed
+     * since the scene was last applied
+     *
+     * @return true if changed, false otherwise
+     */
+    public boolean isDirty()
+    {
+        for (MapObject obj : ordered)
+        {
+            if (obj.isDirty()) return true;
+        }
+        return false;
+    }
+
     /**
      * Clear the scene before moving onto a new menu
      */
@@ -72,27 +136,21 @@ public class MapScene
     }
 
     /**
-     * Updates the scene, getting the "dirty" bounds
+     * Updates the scene, redrawing the buffer if any object changed.
+     * The buffer tracks the region that was drawn to and only sends
+     * the pixels that actually changed to the client.
      */
     public void apply(MapBuffer buffer) {
         if (items.size() == 0) return;
 
-        int[] bounds = buffer.bounds;
-        bounds[0] = bounds[1] = 127;
-        bounds[2] = bounds[3] = 0;
-        buffer.dirty = false;
+        boolean changed = false;
         for (MapObject obj : ordered) {
             if (obj.isDirty()) {
-                int[] dirty = obj.getFlagBounds();
-                bounds[0] = Math.min(bounds[0], dirty[0]);
-                bounds[1] = Math.min(bounds[1], dirty[1]);
-                bounds[2] = Math.max(bounds[2], dirty[2]);
-                bounds[3] = Math.max(bounds[3], dirty[3]);
-                buffer.dirty = true;
+                changed = true;
             }
             obj.clean();
         }
-        if (buffer.dirty) {
+        if (changed) {
             buffer.clear();
             for (MapObject obj : ordered) {
                 if (obj.visible)
@@ -33,8 +33,12 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import java.awt.*;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 
 /**
  * A scheme used by a menu
@@ -44,6 +48,8 @@ public class MapScheme
     private static final HashMap<String, MapScheme> schemes = new HashMap<String, MapScheme>();
 
     private static final String SCHEME_FILE = "schemes.yml";
+    private static final String PACK_PREFIX = "schemes-";
+    private static final String PACK_SUFFIX = ".pack";
 
     private static final String FONTS  = "fonts";
     private static final String FAMILY = "family";
@@ -53,10 +59,12 @@ public class MapScheme
     private static final String COLORS = "colors";
 
     private HashMap<String, MapImage> images = new HashMap<String, MapImage>();
+    private HashSet<String>           imageKeys = new HashSet<String>();
     private HashMap<String, MapFont>  fonts  = new HashMap<String, MapFont>();
     private HashMap<String, Byte>     colors = new HashMap<String, Byte>();
 
-    private JavaPlugin plugin;
+    private JavaPlugin    plugin;
+    private MapAssetStore store;
     private File root;
     private File folder;
     private String key = "default";
@@ -75,6 +83,41 @@ public class MapScheme
         return new MapScheme(plugin, root);
     }
 
+    /**
+     * Creates the schemes for the given plugin using the
+     * root folder as the place to load images for schemes from.
+     * When packed, the images of every scheme are kept in a
+     * memory mapped file in the plugin's data folder and only
+     * loaded onto the heap while they are being used. Use this
+     * for plugins with a lot of large scheme images, and call
+     * {@link #close(JavaPlugin)} when the plugin is disabled.
+     *
+     * @param plugin plugin reference
+     * @param root   the root folder for scheme images
+     * @param packed whether or not to keep images in a pack file
+     * @return the created map scheme
+     */
+    public static MapScheme create(JavaPlugin plugin, File root, boolean packed)
+    {
+        MapScheme scheme = new MapScheme(plugin, root);
+        if (packed)
+        {
+            try
+            {
+                // Each scheme gets its own pack so creating another can't truncate one in use
+                plugin.getDataFolder().mkdirs();
+                File pack = File.createTempFile(PACK_PREFIX, PACK_SUFFIX, plugin.getDataFolder());
+                pack.deleteOnExit();
+                scheme.store = new MapAssetStore(pack);
+            }
+            catch (IOException ex)
+            {
+                Bukkit.getLogger().warning("Unable to create scheme pack for " + plugin.getName() + ", keeping images in memory");
+            }
+        }
+        return scheme;
+    }
+
     /**
      * Retrieves a scheme for the plugin
      *
@@ -108,6 +151,52 @@ public class MapScheme
         return list;
     }
 
+    /**
+     * Removes the schemes of a plugin, closing and deleting the
+     * packs of any packed schemes
+     *
+     * @param plugin plugin to remove the schemes of
+     */
+    public static void close(JavaPlugin plugin)
+    {
+        close(plugin.getName() + "_");
+    }
+
+    /**
+     * Removes the schemes of every plugin, closing and deleting
+     * the packs of any packed schemes. MCCore calls this when it
+     * is disabled.
+     */
+    public static void closeAll()
+    {
+        close("");
+    }
+
+    /**
+     * Removes the schemes whose keys start with the prefix,
+     * closing each pack once even when schemes share it
+     *
+     * @param prefix key prefix of the schemes to remove
+     */
+    private static void close(String prefix)
+    {
+        IdentityHashMap<MapAssetStore, Boolean> closed = new IdentityHashMap<MapAssetStore, Boolean>();
+        Iterator<String> iterator = schemes.keySet().iterator();
+        while (iterator.hasNext())
+        {
+            String key = iterator.next();
+            if (!key.startsWith(prefix)) continue;
+
+            MapAssetStore store = schemes.get(key).store;
+            if (store != null && closed.put(store, true) == null)
+            {
+                store.close();
+                store.getFile().delete();
+            }
+            iterator.remove();
+        }
+    }
+
     /**
      * Creates a map scheme for the given plugin
      *
@@ -145,9 +234,20 @@ public class MapScheme
      * @return the image for the scheme
      */
     public MapImage getImage(String key) {
+        if (store != null) return store.get(this.key + "/" + key);
         return images.get(key);
     }
 
+    /**
+     * Retrieves the pack storing the scheme's images
+     *
+     * @return image pack or null if images are kept in memory
+     */
+    public MapAssetStore getAssetStore()
+    {
+        return store;
+    }
+
     /**
      * Retrieves a font from the scheme
      *
@@ -194,7 +294,7 @@ public class MapScheme
         {
             image = image + ".png";
             MapImageManager.copyImageResource(plugin, image, folder.getAbsolutePath());
-            images.put(key, new MapImage(new File(folder, image)));
+            putImage(key, new MapImage(new File(folder, image)));
         }
         catch (Exception ex)
         {
@@ -202,6 +302,36 @@ public class MapScheme
         }
     }
 
+    /**
+     * Stores an image for the scheme, writing it to the
+     * pack if the scheme uses one
+     *
+     * @param key image key
+     * @param img image to store
+     *
+     * @throws IOException if the image couldn't be written to the pack
+     */
+    private void putImage(String key, MapImage img) throws IOException
+    {
+        imageKeys.add(key);
+        if (store != null) store.put(this.key + "/" + key, img);
+        else images.put(key, img);
+    }
+
+    /**
+     * Uses the image from another scheme, sharing the
+     * same pack entry if the schemes use a pack
+     *
+     * @param key    image key
+     * @param parent scheme to take the image from
+     */
+    private void inheritImage(String key, MapScheme parent)
+    {
+        imageKeys.add(key);
+        if (store != null) store.alias(this.key + "/" + key, parent.key + "/" + key);
+        else images.put(key, parent.images.get(key));
+    }
+
     /**
      * Defines a font used by the scheme if the scheme is not already
      * finalized.
@@ -308,19 +438,21 @@ public class MapScheme
             String name = folder.getName();
             MapScheme scheme = new MapScheme(name, plugin);
             scheme.key = name.toLowerCase();
+            scheme.store = store;
 
             // Load images
-            for (String s : images.keySet())
+            for (String s : imageKeys)
             {
                 try
                 {
                     File image = new File(folder, s + ".png");
-                    scheme.images.put(s, image.exists() ? new MapImage(image) : images.get(s));
+                    if (image.exists()) scheme.putImage(s, new MapImage(image));
+                    else scheme.inheritImage(s, this);
                 }
                 catch (Exception ex)
                 {
                     Bukkit.getLogger().info("Invalid scheme image " + name + ":" + s);
-                    scheme.images.put(s, images.get(s));
+                    scheme.inheritImage(s, this);
                 }
             }
 
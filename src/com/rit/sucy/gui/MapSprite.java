@@ -0,0 +1,156 @@
+/**
+ * MCCore
+ * com.rit.sucy.gui.MapSprite
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.gui;
+
+/**
+ * <p>A scene object that plays a {@link MapAnimation}. The frame shown
+ * is picked from the time since the sprite started playing whenever the
+ * scene checks for changes, so the scene is only redrawn when the frame
+ * actually changes and the MapBuffer only sends the pixels that differ
+ * from the last frame.</p>
+ * <p>Frames are never drawn onto, so the same animation can be shared
+ * between any number of sprites and players.</p>
+ */
+public class MapSprite extends MapObject
+{
+    private MapAnimation animation;
+    private boolean      loop    = true;
+    private boolean      playing = true;
+    private long         start;
+    private long         pausedAt;
+    private int          frame;
+
+    /**
+     * Initializes a sprite that starts playing its animation right away
+     *
+     * @param animation animation to play
+     * @param x         initial X position
+     * @param y         initial Y position
+     */
+    public MapSprite(MapAnimation animation, int x, int y)
+    {
+        super(animation.getFrame(0), x, y);
+        this.animation = animation;
+        this.start = System.currentTimeMillis();
+    }
+
+    /**
+     * Retrieves the animation played by the sprite
+     *
+     * @return sprite animation
+     */
+    public MapAnimation getAnimation()
+    {
+        return animation;
+    }
+
+    /**
+     * Retrieves the index of the frame currently shown
+     *
+     * @return current frame index
+     */
+    public int getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * Sets whether or not the animation starts over after the last
+     * frame. Animations that don't loop stay on the last frame.
+     *
+     * @param loop true to loop, false to play once
+     */
+    public void setLooping(boolean loop)
+    {
+        this.loop = loop;
+    }
+
+    /**
+     * Checks whether or not the animation is currently playing
+     *
+     * @return true if playing, false if paused
+     */
+    public boolean isPlaying()
+    {
+        return playing;
+    }
+
+    /**
+     * Resumes the animation from where it was paused
+     */
+    public void play()
+    {
+        if (playing) return;
+        start += System.currentTimeMillis() - pausedAt;
+        playing = true;
+    }
+
+    /**
+     * Pauses the animation on the current frame
+     */
+    public void pause()
+    {
+        if (!playing) return;
+        pausedAt = System.currentTimeMillis();
+        playing = false;
+    }
+
+    /**
+     * Restarts the animation from the first frame
+     */
+    public void reset()
+    {
+        start = System.currentTimeMillis();
+        pausedAt = start;
+        showFrame(0);
+    }
+
+    /**
+     * Advances to the frame for the current time before checking
+     * whether or not the object requires an update.
+     *
+     * @return true if required, false otherwise
+     */
+    @Override
+    public boolean isDirty()
+    {
+        if (playing)
+        {
+            showFrame(animation.getFrameAt(System.currentTimeMillis() - start, loop));
+        }
+        return super.isDirty();
+    }
+
+    private void showFrame(int index)
+    {
+        if (index != frame)
+        {
+            frame = index;
+            setImage(animation.getFrame(index));
+        }
+    }
+}
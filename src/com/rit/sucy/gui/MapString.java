@@ -26,15 +26,24 @@
  */
 package com.rit.sucy.gui;
 
+/**
+ * An image containing pre-rendered text. Use {@link MapStringCache}
+ * to share sprites for labels that are created repeatedly.
+ */
 public class MapString extends MapImage
 {
     protected int base;
 
     public MapString(MapFont font, byte color, String text)
     {
-        super(font.measureString(text));
+        this(font, color, text, font.measureString(text));
+    }
+
+    private MapString(MapFont font, byte color, String text, int[] size)
+    {
+        super(size);
 
-        base = font.measureString(text)[2];
+        base = size[2];
 
         drawColorString(font, color, text, 0, -base, '&');
 
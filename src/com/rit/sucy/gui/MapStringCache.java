@@ -0,0 +1,234 @@
+/**
+ * MCCore
+ * com.rit.sucy.gui.MapStringCache
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.gui;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * <p>Caches rendered text sprites so labels that don't change are only
+ * drawn glyph by glyph once. Sprites are keyed by the font, color and
+ * text used to render them and the least recently used sprites are
+ * evicted once the total pixel count goes over the limit.</p>
+ * <p>Sprites returned by the cache are shared between every caller that
+ * asks for the same text, so they should never be drawn onto. Create a
+ * new MapString instead if you need to modify the image.</p>
+ */
+public class MapStringCache
+{
+    private static final LinkedHashMap<Key, MapString> cache = new LinkedHashMap<Key, MapString>(64, 0.75f, true);
+
+    private static int  maxSize = 1 << 20;
+    private static int  size;
+    private static long hits;
+    private static long misses;
+    private static long evictions;
+
+    /**
+     * Retrieves a rendered sprite for the text, rendering it
+     * if it isn't already cached
+     *
+     * @param font  font to render with
+     * @param color color of the text
+     * @param text  text to render
+     *
+     * @return rendered text sprite
+     */
+    public static synchronized MapString get(MapFont font, byte color, String text)
+    {
+        Key key = new Key(font, color, text);
+        MapString sprite = cache.get(key);
+        if (sprite != null)
+        {
+            hits++;
+            return sprite;
+        }
+
+        misses++;
+        sprite = new MapString(font, color, text);
+        cache.put(key, sprite);
+        size += sizeOf(sprite);
+        trim();
+        return sprite;
+    }
+
+    /**
+     * Sets the maximum number of pixels the cached sprites can
+     * take up before the least recently used ones are evicted
+     *
+     * @param pixels maximum total pixel count
+     */
+    public static synchronized void setMaxSize(int pixels)
+    {
+        maxSize = Math.max(0, pixels);
+        trim();
+    }
+
+    /**
+     * Retrieves the maximum number of pixels the cache can hold
+     *
+     * @return maximum total pixel count
+     */
+    public static synchronized int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Retrieves the total number of pixels currently cached
+     *
+     * @return total pixel count
+     */
+    public static synchronized int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of sprites currently cached
+     *
+     * @return number of cached sprites
+     */
+    public static synchronized int getCount()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Retrieves the number of requests served from the cache
+     *
+     * @return number of cache hits
+     */
+    public static synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of requests that had to render the text
+     *
+     * @return number of cache misses
+     */
+    public static synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Retrieves the number of sprites evicted to stay under the limit
+     *
+     * @return number of evictions
+     */
+    public static synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Retrieves the portion of requests that were served from the cache
+     *
+     * @return hit rate between 0 and 1
+     */
+    public static synchronized double getHitRate()
+    {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public static synchronized void resetStats()
+    {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Clears all cached sprites
+     */
+    public static synchronized void clear()
+    {
+        cache.clear();
+        size = 0;
+    }
+
+    /**
+     * Evicts the least recently used sprites until the
+     * cache is back under its size limit
+     */
+    private static void trim()
+    {
+        Iterator<MapString> iterator = cache.values().iterator();
+        while (size > maxSize && iterator.hasNext())
+        {
+            size -= sizeOf(iterator.next());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static int sizeOf(MapImage img)
+    {
+        return img.getWidth() * img.getHeight();
+    }
+
+    /**
+     * Key for a rendered sprite. Fonts are compared by
+     * identity as each MapFont has its own glyph data.
+     */
+    private static class Key
+    {
+        private final MapFont font;
+        private final byte    color;
+        private final String  text;
+        private final int     hash;
+
+        private Key(MapFont font, byte color, String text)
+        {
+            this.font = font;
+            this.color = color;
+            this.text = text;
+            this.hash = (System.identityHashCode(font) * 31 + color) * 31 + text.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return font == other.font && color == other.color && text.equals(other.text);
+        }
+    }
+}
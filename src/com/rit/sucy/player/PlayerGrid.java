@@ -0,0 +1,263 @@
+/**
+ * MCCore
+ * com.rit.sucy.player.PlayerGrid
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.player;
+
+import com.rit.sucy.version.VersionManager;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * <p>A per-world index of online players bucketed by chunk, used
+ * to find the players near a location without checking every
+ * player on the server.</p>
+ * <p>The index is rebuilt once per tick by the {@link PlayerGridTask}
+ * so player positions may be up to a tick old. Each rebuild replaces
+ * the whole index at once so it can be safely read from other
+ * threads. Lookups never rebuild the index themselves, so no players
+ * are found while it isn't built, such as after MCCore is disabled.</p>
+ */
+public class PlayerGrid
+{
+    private static volatile HashMap<World, Cells> worlds;
+
+    /**
+     * Rebuilds the index from the current positions of all online players.
+     * This should only be called from the main server thread.
+     */
+    public static void refresh()
+    {
+        HashMap<World, Cells> index = new HashMap<World, Cells>();
+        List<Player> players = VersionManager.getOnlinePlayerList();
+        for (int i = 0; i < players.size(); i++)
+        {
+            Player player = players.get(i);
+            Location loc = player.getLocation();
+            Cells cells = index.get(loc.getWorld());
+            if (cells == null)
+            {
+                cells = new Cells();
+                index.put(loc.getWorld(), cells);
+            }
+
+            Entry entry = new Entry(player, loc.getX(), loc.getY(), loc.getZ());
+            Long key = key(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+            ArrayList<Entry> cell = cells.get(key);
+            if (cell == null)
+            {
+                cell = new ArrayList<Entry>(4);
+                cells.put(key, cell);
+            }
+            cell.add(entry);
+        }
+        worlds = index;
+    }
+
+    /**
+     * Clears the index, such as when the plugin is disabled
+     */
+    public static void clear()
+    {
+        worlds = null;
+    }
+
+    /**
+     * Retrieves the players strictly within a radius of a location
+     *
+     * @param center center of the area
+     * @param radius radius of the area
+     *
+     * @return players within the sphere around the location
+     */
+    public static List<Player> getNearbyPlayers(Location center, double radius)
+    {
+        return getNearbyPlayers(center, radius, true);
+    }
+
+    /**
+     * Retrieves the players strictly within a radius of a location
+     *
+     * @param center center of the area
+     * @param radius radius of the area
+     * @param sphere sphere if true, cylinder if false (cylinder contains all y within the circle)
+     *
+     * @return players within the area
+     */
+    public static List<Player> getNearbyPlayers(Location center, double radius, boolean sphere)
+    {
+        ArrayList<Player> result = new ArrayList<Player>();
+        Cells cells = getCells(center.getWorld());
+        if (cells == null || radius <= 0) return result;
+
+        double x = center.getX();
+        double y = center.getY();
+        double z = center.getZ();
+        double rSq = radius * radius;
+        for (ArrayList<Entry> cell : getCells(cells, x - radius, z - radius, x + radius, z + radius))
+        {
+            for (Entry entry : cell)
+            {
+                double dx = entry.x - x;
+                double dy = sphere ? entry.y - y : 0;
+                double dz = entry.z - z;
+                if (dx * dx + dy * dy + dz * dz < rSq && entry.player.isOnline())
+                {
+                    result.add(entry.player);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the players within a box, including its edges
+     *
+     * @param world world the box is in
+     * @param minX  lower x bound
+     * @param minY  lower y bound
+     * @param minZ  lower z bound
+     * @param maxX  upper x bound
+     * @param maxY  upper y bound
+     * @param maxZ  upper z bound
+     *
+     * @return players within the box
+     */
+    public static List<Player> getPlayersInBox(World world, double minX, double minY, double minZ, double maxX, double maxY, double maxZ)
+    {
+        ArrayList<Player> result = new ArrayList<Player>();
+        Cells cells = getCells(world);
+        if (cells == null) return result;
+
+        for (ArrayList<Entry> cell : getCells(cells, minX, minZ, maxX, maxZ))
+        {
+            for (Entry entry : cell)
+            {
+                if (entry.x >= minX && entry.y >= minY && entry.z >= minZ
+                    && entry.x <= maxX && entry.y <= maxY && entry.z <= maxZ
+                    && entry.player.isOnline())
+                {
+                    result.add(entry.player);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the index for a world
+     *
+     * @param world world to get the index for
+     *
+     * @return index of the world or null if no players are in it or the index isn't built
+     */
+    private static Cells getCells(World world)
+    {
+        HashMap<World, Cells> index = worlds;
+        return index == null ? null : index.get(world);
+    }
+
+    /**
+     * Gets the cells overlapping an area. When the area covers more
+     * chunks than there are occupied cells, all cells are returned
+     * instead of looking up each chunk.
+     *
+     * @param cells index of the world
+     * @param minX  lower x bound
+     * @param minZ  lower z bound
+     * @param maxX  upper x bound
+     * @param maxZ  upper z bound
+     *
+     * @return cells overlapping the area
+     */
+    private static Collection<ArrayList<Entry>> getCells(Cells cells, double minX, double minZ, double maxX, double maxZ)
+    {
+        int minCx = (int) Math.floor(minX) >> 4;
+        int minCz = (int) Math.floor(minZ) >> 4;
+        int maxCx = (int) Math.floor(maxX) >> 4;
+        int maxCz = (int) Math.floor(maxZ) >> 4;
+        if ((long) (maxCx - minCx + 1) * (maxCz - minCz + 1) >= cells.size())
+        {
+            return cells.values();
+        }
+
+        ArrayList<ArrayList<Entry>> result = new ArrayList<ArrayList<Entry>>();
+        for (int cx = minCx; cx <= maxCx; cx++)
+        {
+            for (int cz = minCz; cz <= maxCz; cz++)
+            {
+                ArrayList<Entry> cell = cells.get(key(cx, cz));
+                if (cell != null)
+                {
+                    result.add(cell);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Combines chunk coordinates into a single key
+     *
+     * @param cx chunk x coordinate
+     * @param cz chunk z coordinate
+     *
+     * @return chunk key
+     */
+    private static long key(int cx, int cz)
+    {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Players in a single world bucketed by chunk key
+     */
+    private static class Cells extends HashMap<Long, ArrayList<Entry>> { }
+
+    /**
+     * A player along with their position when the index was built
+     */
+    private static class Entry
+    {
+        private final Player player;
+        private final double x;
+        private final double y;
+        private final double z;
+
+        private Entry(Player player, double x, double y, double z)
+        {
+            this.player = player;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+}
@@ -0,0 +1,552 @@
+/**
+ * MCCore
+ * com.rit.sucy.player.PlayerIdCache
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.player;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>A thread safe cache mapping player names to UUIDs and back. Names
+ * are not case sensitive. The least recently used players are evicted
+ * once the cache goes over its size limit.</p>
+ * <p>Names that aren't cached can be looked up asynchronously through
+ * {@link #resolveAsync(String)}. Several requests for the same name
+ * share one lookup. Names that can't be found are remembered for a
+ * while so repeated requests for them don't query the server again.</p>
+ */
+public class PlayerIdCache
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final LinkedHashMap<String, Entry> byName  = new LinkedHashMap<String, Entry>(256, 0.75f, true);
+    private static final HashMap<UUID, Entry>         byId    = new HashMap<UUID, Entry>(256);
+    private static final LinkedHashMap<String, Long>  missing = new LinkedHashMap<String, Long>(64, 0.75f, true);
+
+    private static final ConcurrentHashMap<String, Future<UUID>> pending = new ConcurrentHashMap<String, Future<UUID>>();
+
+    private static ExecutorService executor;
+
+    private static int  maxSize     = 100000;
+    private static int  maxMissing  = 10000;
+    private static long missingTime = 10 * 60 * 1000;
+    private static long timeout     = 10 * 1000;
+    private static long hits;
+    private static long misses;
+    private static long missingHits;
+    private static long lookups;
+    private static long evictions;
+
+    /**
+     * Adds or updates the mapping for a player, replacing
+     * any old name the player had
+     *
+     * @param name player name
+     * @param id   player UUID
+     */
+    public static synchronized void put(String name, UUID id)
+    {
+        String key = name.toLowerCase();
+        Entry old = byId.get(id);
+        if (old != null && !old.key.equals(key))
+        {
+            byName.remove(old.key);
+        }
+        old = byName.get(key);
+        if (old != null && !old.id.equals(id))
+        {
+            byId.remove(old.id);
+        }
+
+        Entry entry = new Entry(key, name, id);
+        byName.put(key, entry);
+        byId.put(id, entry);
+        missing.remove(key);
+        trim();
+    }
+
+    /**
+     * Gets the UUID of a cached player. This is not case sensitive.
+     *
+     * @param name player name
+     *
+     * @return player UUID or null if not cached
+     */
+    public static synchronized UUID getUUID(String name)
+    {
+        Entry entry = byName.get(name.toLowerCase());
+        if (entry == null)
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.id;
+    }
+
+    /**
+     * Gets the name of a cached player
+     *
+     * @param id player UUID
+     *
+     * @return player name or null if not cached
+     */
+    public static synchronized String getName(UUID id)
+    {
+        Entry entry = byId.get(id);
+        if (entry == null)
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+
+        // Mark the player as recently used
+        byName.get(entry.key);
+        return entry.name;
+    }
+
+    /**
+     * Checks whether or not a recent lookup for the name failed
+     *
+     * @param name player name
+     *
+     * @return true if the name is known to be missing, false otherwise
+     */
+    public static synchronized boolean isMissing(String name)
+    {
+        String key = name.toLowerCase();
+        Long time = missing.get(key);
+        if (time == null) return false;
+        if (System.currentTimeMillis() - time >= missingTime)
+        {
+            missing.remove(key);
+            return false;
+        }
+        missingHits++;
+        return true;
+    }
+
+    /**
+     * <p>Looks up the UUID for a name without blocking. Cached players
+     * and names known to be missing complete right away. Otherwise the
+     * server is queried on a background thread, and the result is added
+     * to the cache.</p>
+     * <p>The future gives null if the player couldn't be found.</p>
+     *
+     * @param name player name
+     *
+     * @return future giving the player UUID
+     */
+    public static Future<UUID> resolveAsync(final String name)
+    {
+        UUID id = getUUID(name);
+        if (id != null || isMissing(name))
+        {
+            return done(id);
+        }
+
+        final String key = name.toLowerCase();
+        Future<UUID> future = pending.get(key);
+        if (future != null) return future;
+
+        FutureTask<UUID> task = new FutureTask<UUID>(new Callable<UUID>()
+        {
+            @Override
+            public UUID call()
+            {
+                try
+                {
+                    return lookup(name);
+                }
+                finally
+                {
+                    pending.remove(key);
+                }
+            }
+        });
+        future = pending.putIfAbsent(key, task);
+        if (future != null) return future;
+
+        getExecutor().execute(task);
+        return task;
+    }
+
+    /**
+     * Looks up the UUID for a name, waiting for the server to respond
+     * if it isn't cached. Avoid calling this on the main server thread.
+     * The wait is limited by the lookup timeout, after which this gives
+     * up and returns null.
+     *
+     * @param name player name
+     *
+     * @return player UUID or null if the player couldn't be found in time
+     */
+    public static UUID resolve(String name)
+    {
+        try
+        {
+            return resolveAsync(name).get(getTimeout(), TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (TimeoutException ex)
+        {
+            return null;
+        }
+        catch (CancellationException ex)
+        {
+            return null;
+        }
+        catch (ExecutionException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the UUID offline mode servers use for a name. On online
+     * mode servers this is used for players that couldn't be found.
+     *
+     * @param name player name
+     *
+     * @return offline mode UUID
+     */
+    public static UUID getOfflineUUID(String name)
+    {
+        return UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(UTF_8));
+    }
+
+    /**
+     * Sets the max number of players to keep in the cache
+     *
+     * @param size max number of players
+     */
+    public static synchronized void setMaxSize(int size)
+    {
+        maxSize = Math.max(0, size);
+        trim();
+    }
+
+    /**
+     * Retrieves the max number of players kept in the cache
+     *
+     * @return max number of players
+     */
+    public static synchronized int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Sets how long names that couldn't be found are remembered
+     * and how many of them can be remembered at once
+     *
+     * @param time how long to remember missing names in milliseconds
+     * @param max  max number of missing names to remember
+     */
+    public static synchronized void setMissingLimits(long time, int max)
+    {
+        missingTime = Math.max(0, time);
+        maxMissing = Math.max(0, max);
+        trim();
+    }
+
+    /**
+     * Sets how long resolve(String) waits for a lookup to finish
+     *
+     * @param time max wait time in milliseconds
+     */
+    public static synchronized void setTimeout(long time)
+    {
+        timeout = Math.max(0, time);
+    }
+
+    /**
+     * Retrieves how long resolve(String) waits for a lookup to finish
+     *
+     * @return max wait time in milliseconds
+     */
+    public static synchronized long getTimeout()
+    {
+        return timeout;
+    }
+
+    /**
+     * Retrieves the number of players currently cached
+     *
+     * @return number of cached players
+     */
+    public static synchronized int getCount()
+    {
+        return byName.size();
+    }
+
+    /**
+     * Retrieves the number of lookups served from the cache
+     *
+     * @return number of cache hits
+     */
+    public static synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of lookups that weren't cached
+     *
+     * @return number of cache misses
+     */
+    public static synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Retrieves the number of lookups skipped because the
+     * name was recently found to be missing
+     *
+     * @return number of missing name hits
+     */
+    public static synchronized long getMissingHits()
+    {
+        return missingHits;
+    }
+
+    /**
+     * Retrieves the number of times the server was queried
+     *
+     * @return number of server lookups
+     */
+    public static synchronized long getLookups()
+    {
+        return lookups;
+    }
+
+    /**
+     * Retrieves the number of players evicted to stay under the limit
+     *
+     * @return number of evictions
+     */
+    public static synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Resets the hit, miss, lookup and eviction counters
+     */
+    public static synchronized void resetStats()
+    {
+        hits = 0;
+        misses = 0;
+        missingHits = 0;
+        lookups = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Clears all cached players and missing names
+     */
+    public static synchronized void clear()
+    {
+        byName.clear();
+        byId.clear();
+        missing.clear();
+    }
+
+    /**
+     * Stops the background lookup thread, such as when the plugin is
+     * disabled. Lookups that haven't finished are cancelled so nothing
+     * is left waiting on them.
+     */
+    public static synchronized void shutdown()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+            executor = null;
+        }
+        for (Future<UUID> future : pending.values())
+        {
+            future.cancel(true);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Queries the server for a name and caches the result
+     *
+     * @param name player name
+     *
+     * @return player UUID or null if not found
+     */
+    private static UUID lookup(String name)
+    {
+        synchronized (PlayerIdCache.class)
+        {
+            lookups++;
+        }
+
+        UUID id = null;
+        try
+        {
+            OfflinePlayer player = Bukkit.getOfflinePlayer(name);
+            if (player != null)
+            {
+                id = player.getUniqueId();
+            }
+        }
+        catch (Exception ex)
+        {
+            // Lookup failed, treat it as missing
+        }
+
+        // Online mode servers fall back to the offline UUID when a name isn't found
+        if (id == null || (Bukkit.getOnlineMode() && id.equals(getOfflineUUID(name))))
+        {
+            markMissing(name);
+            return null;
+        }
+        put(name, id);
+        return id;
+    }
+
+    /**
+     * Remembers that a name couldn't be found
+     *
+     * @param name player name
+     */
+    private static synchronized void markMissing(String name)
+    {
+        missing.put(name.toLowerCase(), System.currentTimeMillis());
+        trim();
+    }
+
+    /**
+     * Evicts the least recently used players and missing
+     * names until the cache is back under its limits
+     */
+    private static void trim()
+    {
+        Iterator<Entry> iterator = byName.values().iterator();
+        while (byName.size() > maxSize && iterator.hasNext())
+        {
+            byId.remove(iterator.next().id);
+            iterator.remove();
+            evictions++;
+        }
+
+        Iterator<Map.Entry<String, Long>> missingIterator = missing.entrySet().iterator();
+        while (missing.size() > maxMissing && missingIterator.hasNext())
+        {
+            missingIterator.next();
+            missingIterator.remove();
+        }
+    }
+
+    /**
+     * Gets the executor running lookups, creating it if needed
+     *
+     * @return lookup executor
+     */
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newFixedThreadPool(2, new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "MCCore UUID Lookup");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Creates a future that is already complete
+     *
+     * @param id result of the future
+     *
+     * @return completed future
+     */
+    private static Future<UUID> done(final UUID id)
+    {
+        FutureTask<UUID> task = new FutureTask<UUID>(new Callable<UUID>()
+        {
+            @Override
+            public UUID call()
+            {
+                return id;
+            }
+        });
+        task.run();
+        return task;
+    }
+
+    /**
+     * A cached player
+     */
+    private static class Entry
+    {
+        private final String key;
+        private final String name;
+        private final UUID   id;
+
+        private Entry(String key, String name, UUID id)
+        {
+            this.key = key;
+            this.name = name;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+/**
+ * MCCore
+ * com.rit.sucy.player.PlayerIdStore
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.player;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Stores player name/UUID mappings on disk without blocking the
+ * server. New mappings are appended to a log file on a background
+ * thread as players join. Once enough have been logged, the log is
+ * compacted into the main data file, which holds the latest name of
+ * every player.</p>
+ * <p>Both files hold simple binary records so loading them on startup
+ * is a single pass. A log record cut short by a crash is ignored along
+ * with anything after it. The data file is only ever replaced as a
+ * whole, so if it can't be read it is left untouched and the log is
+ * kept rather than compacting over it.</p>
+ */
+public class PlayerIdStore
+{
+    private static final int MAGIC   = 0x4D434944;
+    private static final int VERSION = 1;
+
+    private final Logger          logger;
+    private final File            data;
+    private final File            log;
+    private final File            temp;
+    private final ExecutorService writer;
+
+    private DataOutputStream logOut;
+    private int              logged;
+    private int              compactAfter = 10000;
+
+    /**
+     * Sets up the store for the files in the given folder
+     *
+     * @param folder folder to keep the files in
+     * @param logger logger to report problems to
+     */
+    public PlayerIdStore(File folder, Logger logger)
+    {
+        this.logger = logger;
+        this.data = new File(folder, "uuid.dat");
+        this.log = new File(folder, "uuid.log");
+        this.temp = new File(folder, "uuid.dat.tmp");
+        folder.mkdirs();
+
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "MCCore UUID Writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Checks whether or not any data has been saved yet
+     *
+     * @return true if the data or log file exists, false otherwise
+     */
+    public boolean exists()
+    {
+        return data.exists() || log.exists();
+    }
+
+    /**
+     * Sets how many mappings are logged before the log is
+     * compacted into the data file
+     *
+     * @param count number of logged mappings
+     */
+    public void setCompactAfter(int count)
+    {
+        compactAfter = Math.max(1, count);
+    }
+
+    /**
+     * Loads every saved mapping, reading the data file followed
+     * by the log so later names replace earlier ones. This should
+     * be called before any mappings are appended.
+     *
+     * @return loaded mappings
+     */
+    public HashMap<UUID, String> load()
+    {
+        HashMap<UUID, String> result = new HashMap<UUID, String>();
+        boolean readable = true;
+        try
+        {
+            recoverTemp();
+            readData(result);
+        }
+        catch (IOException ex)
+        {
+            logger.log(Level.SEVERE, "Failed to read " + data.getName() + ", leaving it untouched", ex);
+            readable = false;
+        }
+        try
+        {
+            logged = readLog(result);
+        }
+        catch (IOException ex)
+        {
+            logger.log(Level.WARNING, "Failed to read " + log.getName(), ex);
+            readable = false;
+        }
+
+        // Fold the log in right away, dropping any partial record left by a crash
+        if (readable && logged > 0)
+        {
+            compact();
+        }
+        return result;
+    }
+
+    /**
+     * Queues a mapping to be appended to the log
+     *
+     * @param id   player UUID
+     * @param name player name
+     */
+    public void append(final UUID id, final String name)
+    {
+        writer.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    if (logOut == null)
+                    {
+                        logOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(log, true)));
+                    }
+                    write(logOut, id, name);
+                    logOut.flush();
+                    if (++logged >= compactAfter)
+                    {
+                        compactNow();
+                    }
+                }
+                catch (IOException ex)
+                {
+                    logger.log(Level.WARNING, "Failed to log player UUID", ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues all of the mappings to be written straight to the data
+     * file, replacing anything saved before. This is used when moving
+     * over data from the old config format.
+     *
+     * @param mappings mappings to write
+     */
+    public void replace(Map<UUID, String> mappings)
+    {
+        final HashMap<UUID, String> copy = new HashMap<UUID, String>(mappings);
+        writer.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    closeLog();
+                    writeData(copy);
+                    log.delete();
+                    logged = 0;
+                }
+                catch (IOException ex)
+                {
+                    logger.log(Level.WARNING, "Failed to save player UUIDs", ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues the log to be compacted into the data file
+     *
+     * @return future completing once compacted
+     */
+    public Future<?> compact()
+    {
+        return writer.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                compactNow();
+            }
+        });
+    }
+
+    /**
+     * Compacts the log and stops the writer thread, waiting for
+     * any queued writes to finish
+     */
+    public void close()
+    {
+        compact();
+        writer.shutdown();
+        try
+        {
+            writer.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Merges the log into the data file. The new data is written to a
+     * temporary file first so a crash part way through can't lose it.
+     * If either file can't be read, both are kept as they are.
+     * Only call this from the writer thread.
+     */
+    private void compactNow()
+    {
+        try
+        {
+            closeLog();
+            if (!log.exists()) return;
+
+            HashMap<UUID, String> mappings = new HashMap<UUID, String>();
+            readData(mappings);
+            readLog(mappings);
+            writeData(mappings);
+            log.delete();
+        }
+        catch (IOException ex)
+        {
+            logger.log(Level.WARNING, "Failed to compact player UUIDs", ex);
+        }
+
+        // Wait for another full batch before trying again if it failed
+        logged = 0;
+    }
+
+    /**
+     * Writes mappings to the data file through the temporary file
+     *
+     * @param mappings mappings to write
+     *
+     * @throws IOException if the file couldn't be written
+     */
+    private void writeData(Map<UUID, String> mappings) throws IOException
+    {
+        FileOutputStream fileOut = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mappings.size());
+            for (Map.Entry<UUID, String> entry : mappings.entrySet())
+            {
+                write(out, entry.getKey(), entry.getValue());
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        finally
+        {
+            out.close();
+        }
+
+        Files.move(temp.toPath(), data.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Cleans up the temporary file left by an interrupted write. It
+     * only replaces the data file if that is missing, which happens
+     * when a crash hit older versions between removing the data file
+     * and renaming the new one into place.
+     *
+     * @throws IOException if the temporary file couldn't be moved
+     */
+    private void recoverTemp() throws IOException
+    {
+        if (!temp.exists()) return;
+
+        if (data.exists())
+        {
+            temp.delete();
+        }
+        else
+        {
+            logger.warning("Recovering " + data.getName() + " from " + temp.getName());
+            Files.move(temp.toPath(), data.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Closes the log output if it is open
+     *
+     * @throws IOException if the log couldn't be closed
+     */
+    private void closeLog() throws IOException
+    {
+        if (logOut != null)
+        {
+            logOut.close();
+            logOut = null;
+        }
+    }
+
+    /**
+     * Reads every record of the data file into the map. Unlike the
+     * log, the data file must be complete to be used.
+     *
+     * @param result map to add the records to
+     *
+     * @throws IOException if the file is unrecognized, incomplete or couldn't be read
+     */
+    private void readData(HashMap<UUID, String> result) throws IOException
+    {
+        if (!data.exists()) return;
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(data), 1 << 16));
+        try
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException("Unrecognized player UUID file: " + data.getName());
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                UUID id = new UUID(in.readLong(), in.readLong());
+                result.put(id, in.readUTF());
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the records of the log into the map, stopping at a
+     * partial record left by a crash
+     *
+     * @param result map to add the records to
+     *
+     * @return number of records read
+     *
+     * @throws IOException if the log couldn't be read
+     */
+    private int readLog(HashMap<UUID, String> result) throws IOException
+    {
+        if (!log.exists()) return 0;
+
+        int count = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(log), 1 << 16));
+        try
+        {
+            while (true)
+            {
+                UUID id = new UUID(in.readLong(), in.readLong());
+                result.put(id, in.readUTF());
+                count++;
+            }
+        }
+        catch (EOFException ex)
+        {
+            // End of the file or a partial record from a crash
+        }
+        catch (UTFDataFormatException ex)
+        {
+            // Garbage left in a partial record from a crash
+        }
+        finally
+        {
+            in.close();
+        }
+        return count;
+    }
+
+    /**
+     * Writes a single record
+     *
+     * @param out  output to write to
+     * @param id   player UUID
+     * @param name player name
+     *
+     * @throws IOException if the record couldn't be written
+     */
+    private static void write(DataOutputStream out, UUID id, String name) throws IOException
+    {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+        out.writeUTF(name);
+    }
+}
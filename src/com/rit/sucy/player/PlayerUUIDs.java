@@ -36,9 +36,12 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 /**
  * <p>This is a utility class for handling getting offline player IDs
@@ -47,15 +50,18 @@ import java.util.UUID;
  * installed, but that shouldn't be a problem since it only takes one
  * login.</p>
  * <p/>
- * <p>The main usage of this class is the static methods.</p>
+ * <p>The main usage of this class is the static methods. Lookups
+ * go through the {@link PlayerIdCache}, which this fills with the
+ * saved players and anyone who joins. Players evicted from the cache
+ * are still found through the saved mappings, so everyone who has
+ * played since MCCore was installed can always be looked up.</p>
  */
 public class PlayerUUIDs implements Listener
 {
+    private static final ConcurrentHashMap<String, UUID> savedIds   = new ConcurrentHashMap<String, UUID>();
+    private static final ConcurrentHashMap<UUID, String> savedNames = new ConcurrentHashMap<UUID, String>();
 
-    private static final HashMap<String, UUID> ids   = new HashMap<String, UUID>();
-    private static final HashMap<UUID, String> names = new HashMap<UUID, String>();
-
-    private Config config;
+    private final PlayerIdStore store;
 
     /**
      * <p>Sets up the listener to update player UUIDs</p>
@@ -70,41 +76,105 @@ public class PlayerUUIDs implements Listener
     public PlayerUUIDs(MCCore plugin)
     {
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
-        config = new Config(plugin, "uuid");
+        store = new PlayerIdStore(plugin.getDataFolder(), plugin.getLogger());
 
         // Load previous data
-        ConfigurationSection section = config.getConfig();
-        for (String key : section.getKeys(false))
+        HashMap<UUID, String> mappings;
+        if (store.exists())
+        {
+            mappings = store.load();
+        }
+
+        // Move data over from the old config
+        else
+        {
+            mappings = new HashMap<UUID, String>();
+            if (new File(plugin.getDataFolder(), "uuid.yml").exists())
+            {
+                // Keys come in file order and new names were always added to the end,
+                // so when a renamed player has several names the last one is kept
+                ConfigurationSection section = new Config(plugin, "uuid").getConfig();
+                for (String key : section.getKeys(false))
+                {
+                    mappings.put(UUID.fromString(section.getString(key)), key);
+                }
+                store.replace(mappings);
+            }
+        }
+
+        // Only fill the cache up to its limit rather than evicting as it loads
+        int limit = PlayerIdCache.getMaxSize();
+        for (Map.Entry<UUID, String> entry : mappings.entrySet())
         {
-            UUID id = UUID.fromString(section.getString(key));
-            ids.put(key.toLowerCase(), id);
-            names.put(id, key);
+            saved(entry.getKey(), entry.getValue());
+            if (limit-- > 0)
+            {
+                PlayerIdCache.put(entry.getValue(), entry.getKey());
+            }
         }
     }
 
     /**
-     * <p>Saves the UUID data to the config</p>
+     * <p>Saves the UUID data</p>
+     * <p>Players are already logged as they join, so this just
+     * queues the log to be compacted into the main data file in
+     * the background.</p>
      */
     public void save()
     {
-        ConfigurationSection section = config.getConfig();
-        for (Map.Entry<UUID, String> id : names.entrySet())
-        {
-            section.set(id.getValue(), id.getKey().toString());
-        }
-        config.save();
+        store.compact();
     }
 
     /**
-     * <p>Updates the UUID of a player when they join</p>
+     * <p>Saves the UUID data and stops the background writer,
+     * waiting for any queued writes to finish</p>
+     * <p>MCCore calls this when it is disabled.</p>
+     */
+    public void close()
+    {
+        store.close();
+        savedIds.clear();
+        savedNames.clear();
+    }
+
+    /**
+     * <p>Updates the UUID of a player when they join, logging
+     * the player if they are new or their name changed</p>
      *
      * @param event event details
      */
     @EventHandler
     public void onJoin(PlayerJoinEvent event)
     {
-        ids.put(event.getPlayer().getName().toLowerCase(), event.getPlayer().getUniqueId());
-        names.put(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+        String name = event.getPlayer().getName();
+        UUID id = event.getPlayer().getUniqueId();
+        if (!name.equals(PlayerIdCache.getName(id)))
+        {
+            PlayerIdCache.put(name, id);
+        }
+
+        // Players can be cached by a lookup without being saved, so only check what was saved
+        if (!name.equals(savedNames.get(id)))
+        {
+            saved(id, name);
+            store.append(id, name);
+        }
+    }
+
+    /**
+     * Records a saved mapping, dropping the old name of the player
+     *
+     * @param id   player UUID
+     * @param name player name
+     */
+    private static void saved(UUID id, String name)
+    {
+        String old = savedNames.put(id, name);
+        if (old != null)
+        {
+            savedIds.remove(old.toLowerCase(), id);
+        }
+        savedIds.put(name.toLowerCase(), id);
     }
 
     /**
@@ -117,7 +187,16 @@ public class PlayerUUIDs implements Listener
      */
     public static UUID getUUID(String name)
     {
-        return ids.get(name.toLowerCase());
+        UUID id = PlayerIdCache.getUUID(name);
+        if (id == null)
+        {
+            id = savedIds.get(name.toLowerCase());
+            if (id != null)
+            {
+                cache(id, name);
+            }
+        }
+        return id;
     }
 
     /**
@@ -131,7 +210,44 @@ public class PlayerUUIDs implements Listener
      */
     public static String getName(UUID id)
     {
-        return names.get(id);
+        String name = PlayerIdCache.getName(id);
+        if (name == null)
+        {
+            name = savedNames.get(id);
+            if (name != null)
+            {
+                cache(id, name);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Puts a saved player back into the cache after it was evicted
+     *
+     * @param id   player UUID
+     * @param name name the player was looked up by
+     */
+    private static void cache(UUID id, String name)
+    {
+        String saved = savedNames.get(id);
+        PlayerIdCache.put(saved == null ? name : saved, id);
+    }
+
+    /**
+     * <p>Gets the UUID of the player with the given name without
+     * blocking, querying the server in the background if the player
+     * hasn't played since MCCore was installed</p>
+     *
+     * @param name name of the player
+     *
+     * @return future giving the UUID of the player or null if not found
+     */
+    public static Future<UUID> getUUIDAsync(String name)
+    {
+        // Put saved players back into the cache so they aren't queried
+        getUUID(name);
+        return PlayerIdCache.resolveAsync(name);
     }
 
     /**
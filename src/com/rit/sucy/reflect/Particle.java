@@ -26,28 +26,46 @@
  */
 package com.rit.sucy.reflect;
 
+import com.rit.sucy.player.PlayerGrid;
 import com.rit.sucy.version.VersionManager;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>A utility class for playing particle effects using reflection to
  * allow for particles not normally supported by Bukkit.</p>
+ * <p>The packet constructor, particle enum values and packet fields are
+ * all resolved once when the first particle is played so each particle
+ * only has to create and send its packet.</p>
  */
 public class Particle
 {
+    private static final Object MISSING = new Object();
 
-    private static Class<?> packetClass;
-    private static Class<?> particleEnum;
-    private static boolean initialized = false;
+    // Packet fields set on servers before 1.8, in constructor order
+    private static final String[] FIELDS = new String[] { "a", "b", "c", "d", "e", "f", "g", "h", "i" };
 
-    private static void initialize()
+    private static final ConcurrentHashMap<String, Object> enumValues = new ConcurrentHashMap<String, Object>();
+    private static final EnumMap<ParticleType, Object>     templates  = new EnumMap<ParticleType, Object>(ParticleType.class);
+
+    private static Class<?>       packetClass;
+    private static Class<?>       particleEnum;
+    private static Constructor<?> packetConstructor;
+    private static MethodHandle[] fieldSetters;
+    private static boolean        modern;
+    private static volatile boolean initialized = false;
+
+    private static synchronized void initialize()
     {
-        initialized = true;
+        if (initialized) return;
 
         // Try to get the packet instance for 1.6.4 and earlier
         particleEnum = Reflection.getNMSClass("EnumParticle");
@@ -58,6 +76,66 @@ public class Particle
         {
             packetClass = Reflection.getNMSClass("PacketPlayOutWorldParticles");
         }
+
+        modern = VersionManager.isVersionAtLeast(VersionManager.V1_8_0);
+        try
+        {
+            if (packetClass != null && modern && particleEnum != null)
+            {
+                packetConstructor = packetClass.getConstructor(particleEnum, Boolean.TYPE, Float.TYPE, Float.TYPE, Float.TYPE, Float.TYPE, Float.TYPE, Float.TYPE, Float.TYPE, Integer.TYPE, int[].class);
+
+                // Map both the enum names and the old packet strings to the enum values
+                for (Object value : particleEnum.getEnumConstants())
+                    enumValues.put(value.toString(), value);
+                for (String key : CONVERSION.keySet())
+                {
+                    Object value = enumValues.get(CONVERSION.get(key));
+                    if (value != null)
+                        enumValues.put(key, value);
+                }
+            }
+            else if (packetClass != null)
+            {
+                fieldSetters = new MethodHandle[FIELDS.length];
+                for (int i = 0; i < FIELDS.length; i++)
+                    fieldSetters[i] = Reflection.getSetter(packetClass, FIELDS[i]);
+            }
+        }
+        catch (Exception ex)
+        {
+            packetClass = null;
+        }
+
+        // Resolve each particle type ahead of time
+        for (ParticleType type : ParticleType.values())
+        {
+            Object template = modern ? getEnumValue(type.getPacketString()) : type.getPacketString();
+            templates.put(type, template == null ? MISSING : template);
+        }
+
+        initialized = true;
+    }
+
+    /**
+     * Finds the enum value for a particle string on 1.8+ servers.
+     * Strings that aren't recognized are normalized once and the
+     * result is remembered for later lookups.
+     *
+     * @param particle particle packet string
+     *
+     * @return enum value or null if not found
+     */
+    private static Object getEnumValue(String particle)
+    {
+        Object value = enumValues.get(particle);
+        if (value == null)
+        {
+            value = enumValues.get(particle.toUpperCase().replace(" ", "_"));
+            if (value == null)
+                value = MISSING;
+            enumValues.put(particle, value);
+        }
+        return value == MISSING ? null : value;
     }
 
     /**
@@ -83,7 +161,7 @@ public class Particle
      */
     public static void play(ParticleType particle, Location loc, int radius)
     {
-        play(particle.getPacketString(), loc, radius, 1.0f);
+        play(particle, loc, radius, 1.0f);
     }
 
     /**
@@ -96,7 +174,11 @@ public class Particle
      */
     public static void play(ParticleType particle, Location loc, int radius, float speed)
     {
-        play(particle.getPacketString(), loc, radius, speed);
+        Object template = getTemplate(particle);
+        if (template != null)
+        {
+            send(createPacket(template, loc, 0, 0, 0, speed, 0, new int[0]), loc, radius);
+        }
     }
 
     /**
@@ -323,6 +405,39 @@ public class Particle
      * @param extra    extra data for 1.8+
      */
     public static void play(String particle, Location loc, int radius, float dx, float dy, float dz, float speed, int count, int[] extra)
+    {
+        Object template = getTemplate(particle);
+        if (template != null)
+        {
+            send(createPacket(template, loc, dx, dy, dz, speed, count, extra), loc, radius);
+        }
+    }
+
+    /**
+     * Gets the resolved form of a particle type used to create packets
+     *
+     * @param particle type of particle
+     *
+     * @return enum value on 1.8+, packet string on older servers or null if not supported
+     */
+    static Object getTemplate(ParticleType particle)
+    {
+        if (!initialized)
+        {
+            initialize();
+        }
+        Object template = templates.get(particle);
+        return packetClass == null || template == MISSING ? null : template;
+    }
+
+    /**
+     * Gets the resolved form of a particle string used to create packets
+     *
+     * @param particle particle packet string
+     *
+     * @return enum value on 1.8+, packet string on older servers or null if not supported
+     */
+    static Object getTemplate(String particle)
     {
         if (!initialized)
         {
@@ -330,65 +445,67 @@ public class Particle
         }
         if (packetClass == null)
         {
-            return;
+            return null;
         }
-        if (VersionManager.isVersionAtLeast(VersionManager.V1_8_0))
+        return modern ? getEnumValue(particle) : particle;
+    }
+
+    /**
+     * Creates a particle packet from the resolved particle
+     *
+     * @param template enum value on 1.8+ or the packet string on older servers
+     * @param loc      location to play the particle at
+     * @param dx       particle x range
+     * @param dy       particle y range
+     * @param dz       particle z range
+     * @param speed    particle speed
+     * @param count    number of particles
+     * @param extra    extra data for 1.8+
+     *
+     * @return the packet or null if it couldn't be created
+     */
+    static Object createPacket(Object template, Location loc, float dx, float dy, float dz, float speed, int count, int[] extra)
+    {
+        try
         {
-            if (CONVERSION.containsKey(particle))
-            {
-                particle = CONVERSION.get(particle);
-            }
-            else particle = particle.toUpperCase().replace(" ", "_");
-            Object[] values = particleEnum.getEnumConstants();
-            Object enumValue = null;
-            for (Object value : values)
+            if (modern)
             {
-                if (value.toString().equals(particle))
-                {
-                    enumValue = value;
-                }
+                return packetConstructor.newInstance(template, true, (float) loc.getX(), (float) loc.getY(), (float) loc.getZ(), dx, dy, dz, speed, count, extra);
             }
-            if (enumValue != null)
+
+            Object packet = Reflection.getInstance(packetClass);
+            Object[] values = new Object[] { template, (float) loc.getX(), (float) loc.getY(), (float) loc.getZ(), dx, dy, dz, speed, count };
+            for (int i = 0; i < values.length; i++)
             {
-                try
-                {
-                    Object packet = packetClass.getConstructor(particleEnum, Boolean.TYPE, Float.TYPE, Float.TYPE, Float.TYPE, Float.TYPE, Float.TYPE, Float.TYPE, Float.TYPE, Integer.TYPE, int[].class)
-                            .newInstance(enumValue, true, (float) loc.getX(), (float) loc.getY(), (float) loc.getZ(), dx, dy, dz, speed, count, extra);
-
-                    for (Player player : VersionManager.getOnlinePlayers())
-                    {
-                        if (player.getWorld() == loc.getWorld() && player.getLocation().distanceSquared(loc) < radius * radius)
-                        {
-                            Reflection.sendPacket(player, packet);
-                        }
-                    }
-                }
-                catch (Exception ex)
+                if (fieldSetters[i] != null)
                 {
-                    // Do nothing
+                    fieldSetters[i].invoke(packet, values[i]);
                 }
             }
+            return packet;
         }
-        else
+        catch (Throwable ex)
         {
-            Object packet = Reflection.getInstance(packetClass);
+            return null;
+        }
+    }
 
-            Reflection.setValue(packet, "a", particle);
-            Reflection.setValue(packet, "b", (float) loc.getX());
-            Reflection.setValue(packet, "c", (float) loc.getY());
-            Reflection.setValue(packet, "d", (float) loc.getZ());
-            Reflection.setValue(packet, "e", dx);
-            Reflection.setValue(packet, "f", dy);
-            Reflection.setValue(packet, "g", dz);
-            Reflection.setValue(packet, "h", speed);
-            Reflection.setValue(packet, "i", count);
-            for (Player player : VersionManager.getOnlinePlayers())
-            {
-                if (player.getWorld() == loc.getWorld() && player.getLocation().distanceSquared(loc) < radius * radius)
-                {
-                    Reflection.sendPacket(player, packet);
-                }
-            }
+    /**
+     * Sends a particle packet to all players within a radius of the location
+     *
+     * @param packet packet to send
+     * @param loc    location the particle is played at
+     * @param radius radius in which to show the effect
+     */
+    private static void send(Object packet, Location loc, int radius)
+    {
+        if (packet == null)
+        {
+            return;
+        }
+        for (Player player : PlayerGrid.getNearbyPlayers(loc, radius))
+        {
+            Reflection.sendPacket(player, packet);
         }
     }
 
@@ -0,0 +1,422 @@
+/**
+ * MCCore
+ * com.rit.sucy.reflect.ParticleBatch
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.reflect;
+
+import com.rit.sucy.player.PlayerGrid;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * <p>Collects particle effects over a tick and sends them all at
+ * once, grouping the packets for each player into a single batch
+ * sent through their connection. Use this instead of {@link Particle} when
+ * playing many particles at once such as for skill effects.</p>
+ * <p>Particles a player wouldn't see are culled per player, both
+ * by distance and by whether or not they are in front of where the
+ * player is looking. Each player is also limited to a maximum number
+ * of particle packets per tick, dropping any beyond that.</p>
+ * <p>Effects are sent by the {@link ParticleBatchTask} at the start
+ * of the next tick.</p>
+ */
+public class ParticleBatch
+{
+    private static final double EYE_HEIGHT = 1.62;
+
+    private static ArrayList<Effect> pending = new ArrayList<Effect>();
+
+    private static int    maxPerPlayer = 100;
+    private static double viewCos      = Math.cos(Math.toRadians(70));
+    private static double closeRange   = 6;
+
+    private static long totalSent;
+    private static long totalCulled;
+    private static long totalDropped;
+    private static int  lastSent;
+    private static int  lastCulled;
+    private static int  lastDropped;
+
+    /**
+     * Queues a particle to be sent to players within a radius of the location
+     *
+     * @param particle type of particle to play
+     * @param loc      location to play at
+     * @param radius   radius of the effect
+     */
+    public static void play(ParticleType particle, Location loc, int radius)
+    {
+        play(particle, loc, radius, 0, 0, 0, 1.0f, 0);
+    }
+
+    /**
+     * Queues a particle to be sent to players within a radius of the location
+     *
+     * @param particle type of particle to play
+     * @param loc      location to play at
+     * @param radius   radius of the effect
+     * @param speed    speed of the particle
+     */
+    public static void play(ParticleType particle, Location loc, int radius, float speed)
+    {
+        play(particle, loc, radius, 0, 0, 0, speed, 0);
+    }
+
+    /**
+     * Queues a particle to be sent to players within a radius of the location
+     *
+     * @param particle type of particle to play
+     * @param loc      location to play at
+     * @param radius   radius of the effect
+     * @param dx       particle x range
+     * @param dy       particle y range
+     * @param dz       particle z range
+     * @param speed    particle speed
+     * @param count    number of particles
+     */
+    public static void play(ParticleType particle, Location loc, int radius, float dx, float dy, float dz, float speed, int count)
+    {
+        queue(Particle.getTemplate(particle), loc, radius, dx, dy, dz, speed, count, new int[0]);
+    }
+
+    /**
+     * Queues a particle to be sent to players within a radius of the location
+     *
+     * @param particle particle packet string
+     * @param loc      location to play at
+     * @param radius   radius of the effect
+     * @param dx       particle x range
+     * @param dy       particle y range
+     * @param dz       particle z range
+     * @param speed    particle speed
+     * @param count    number of particles
+     * @param extra    extra data for 1.8+
+     */
+    public static void play(String particle, Location loc, int radius, float dx, float dy, float dz, float speed, int count, int[] extra)
+    {
+        queue(Particle.getTemplate(particle), loc, radius, dx, dy, dz, speed, count, extra);
+    }
+
+    /**
+     * Sets the max number of particle packets sent to a single player
+     * each tick. Any more than that in a tick are dropped.
+     *
+     * @param max max packets per player per tick
+     */
+    public static void setMaxPerPlayer(int max)
+    {
+        maxPerPlayer = Math.max(1, max);
+    }
+
+    /**
+     * Retrieves the max number of particle packets sent to a single player each tick
+     *
+     * @return max packets per player per tick
+     */
+    public static int getMaxPerPlayer()
+    {
+        return maxPerPlayer;
+    }
+
+    /**
+     * Sets how far from where a player is looking a particle can be
+     * while still being sent to them. Use 180 or more to disable
+     * culling by view direction.
+     *
+     * @param degrees angle from the view direction in degrees
+     */
+    public static void setViewAngle(double degrees)
+    {
+        viewCos = degrees >= 180 ? -1 : Math.cos(Math.toRadians(degrees));
+    }
+
+    /**
+     * Sets the distance within which particles are always sent
+     * regardless of view direction
+     *
+     * @param range distance in blocks
+     */
+    public static void setCloseRange(double range)
+    {
+        closeRange = Math.max(0, range);
+    }
+
+    /**
+     * Retrieves the number of queued effects waiting to be sent
+     *
+     * @return number of queued effects
+     */
+    public static synchronized int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    /**
+     * Retrieves the total number of particle packets sent
+     *
+     * @return total packets sent
+     */
+    public static long getTotalSent()
+    {
+        return totalSent;
+    }
+
+    /**
+     * Retrieves the total number of particle packets skipped because
+     * the player wasn't looking towards them
+     *
+     * @return total packets culled
+     */
+    public static long getTotalCulled()
+    {
+        return totalCulled;
+    }
+
+    /**
+     * Retrieves the total number of particle packets dropped because
+     * players already received the max number for the tick
+     *
+     * @return total packets dropped
+     */
+    public static long getTotalDropped()
+    {
+        return totalDropped;
+    }
+
+    /**
+     * Retrieves the number of particle packets sent by the last flush
+     *
+     * @return packets sent last flush
+     */
+    public static int getLastSent()
+    {
+        return lastSent;
+    }
+
+    /**
+     * Retrieves the number of particle packets culled by the last flush
+     *
+     * @return packets culled last flush
+     */
+    public static int getLastCulled()
+    {
+        return lastCulled;
+    }
+
+    /**
+     * Retrieves the number of particle packets dropped by the last flush
+     *
+     * @return packets dropped last flush
+     */
+    public static int getLastDropped()
+    {
+        return lastDropped;
+    }
+
+    /**
+     * Clears the tracked packet counts
+     */
+    public static void resetStats()
+    {
+        totalSent = 0;
+        totalCulled = 0;
+        totalDropped = 0;
+        lastSent = 0;
+        lastCulled = 0;
+        lastDropped = 0;
+    }
+
+    /**
+     * Clears any queued effects without sending them
+     */
+    public static synchronized void clear()
+    {
+        pending = new ArrayList<Effect>();
+    }
+
+    /**
+     * Sends all queued effects to the players that can see them.
+     * This should only be called from the main server thread.
+     */
+    public static void flush()
+    {
+        ArrayList<Effect> effects;
+        synchronized (ParticleBatch.class)
+        {
+            if (pending.isEmpty()) return;
+            effects = pending;
+            pending = new ArrayList<Effect>();
+        }
+
+        int sent = 0;
+        int culled = 0;
+        int dropped = 0;
+        double closeSq = closeRange * closeRange;
+        IdentityHashMap<Player, Recipient> recipients = new IdentityHashMap<Player, Recipient>();
+        for (Effect effect : effects)
+        {
+            for (Player player : PlayerGrid.getNearbyPlayers(effect.loc, effect.radius))
+            {
+                Recipient recipient = recipients.get(player);
+                if (recipient == null)
+                {
+                    recipient = new Recipient(player.getLocation());
+                    recipients.put(player, recipient);
+                }
+
+                if (!recipient.canSee(effect, closeSq))
+                {
+                    culled++;
+                }
+                else if (recipient.packets.size() >= maxPerPlayer)
+                {
+                    dropped++;
+                }
+                else
+                {
+                    if (effect.packet == null)
+                    {
+                        effect.packet = Particle.createPacket(effect.template, effect.loc, effect.dx, effect.dy, effect.dz, effect.speed, effect.count, effect.extra);
+                        if (effect.packet == null) break;
+                    }
+                    recipient.packets.add(effect.packet);
+                }
+            }
+        }
+
+        for (Player player : recipients.keySet())
+        {
+            ArrayList<Object> packets = recipients.get(player).packets;
+            if (packets.size() > 0)
+            {
+                Reflection.sendPackets(player, packets);
+                sent += packets.size();
+            }
+        }
+
+        lastSent = sent;
+        lastCulled = culled;
+        lastDropped = dropped;
+        totalSent += sent;
+        totalCulled += culled;
+        totalDropped += dropped;
+    }
+
+    /**
+     * Adds a resolved particle to the queue
+     */
+    private static void queue(Object template, Location loc, int radius, float dx, float dy, float dz, float speed, int count, int[] extra)
+    {
+        if (template == null || loc.getWorld() == null) return;
+
+        Effect effect = new Effect(template, loc.clone(), radius, dx, dy, dz, speed, count, extra);
+        synchronized (ParticleBatch.class)
+        {
+            pending.add(effect);
+        }
+    }
+
+    /**
+     * A queued particle effect
+     */
+    private static class Effect
+    {
+        private final Object   template;
+        private final Location loc;
+        private final int      radius;
+        private final float    dx, dy, dz, speed;
+        private final int      count;
+        private final int[]    extra;
+
+        private Object packet;
+
+        private Effect(Object template, Location loc, int radius, float dx, float dy, float dz, float speed, int count, int[] extra)
+        {
+            this.template = template;
+            this.loc = loc;
+            this.radius = radius;
+            this.dx = dx;
+            this.dy = dy;
+            this.dz = dz;
+            this.speed = speed;
+            this.count = count;
+            this.extra = extra;
+        }
+    }
+
+    /**
+     * A player receiving particles this tick along with where
+     * they are looking from and towards
+     */
+    private static class Recipient
+    {
+        private final ArrayList<Object> packets = new ArrayList<Object>();
+        private final World  world;
+        private final double x, y, z;
+        private final double dirX, dirY, dirZ;
+
+        private Recipient(Location loc)
+        {
+            world = loc.getWorld();
+            x = loc.getX();
+            y = loc.getY() + EYE_HEIGHT;
+            z = loc.getZ();
+
+            double yaw = Math.toRadians(loc.getYaw());
+            double pitch = Math.toRadians(loc.getPitch());
+            double xz = Math.cos(pitch);
+            dirX = -xz * Math.sin(yaw);
+            dirY = -Math.sin(pitch);
+            dirZ = xz * Math.cos(yaw);
+        }
+
+        /**
+         * Checks whether or not the effect is close enough to or in
+         * front of the player for them to see it
+         *
+         * @param effect  effect to check
+         * @param closeSq squared distance within which effects are always seen
+         *
+         * @return true if visible, false otherwise
+         */
+        private boolean canSee(Effect effect, double closeSq)
+        {
+            if (viewCos <= -1 || effect.loc.getWorld() != world) return true;
+
+            double vx = effect.loc.getX() - x;
+            double vy = effect.loc.getY() - y;
+            double vz = effect.loc.getZ() - z;
+            double distSq = vx * vx + vy * vy + vz * vz;
+            if (distSq <= closeSq) return true;
+
+            double dot = vx * dirX + vy * dirY + vz * dirZ;
+            return dot >= viewCos * Math.sqrt(distSq);
+        }
+    }
+}
@@ -29,25 +29,43 @@ package com.rit.sucy.reflect;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>Utility class for performing reflection operations. Only use
  * this class if you know what you're doing.</p>
+ * <p>Player connections used for sending packets are cached per
+ * player until they leave the server, and the calls used to send
+ * packets are bound once when the class is initialized.</p>
  */
 public class Reflection
 {
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SENDER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ConcurrentHashMap<UUID, Connection> connections = new ConcurrentHashMap<UUID, Connection>();
+
+    // Resolved members for each class, with MISSING marking members that don't exist
+    private static final Object MISSING = new Object();
+    private static final ConcurrentHashMap<Class<?>, Members> members = new ConcurrentHashMap<Class<?>, Members>();
+
     private static String CRAFT;
     private static String NMS;
     private static Class<?> packetClass;
 
-    private static Method getHandle;
-    private static Method sendPacket;
-
-    private static Field connection;
+    private static MethodHandle getHandle;
+    private static MethodHandle connection;
+    private static MethodHandle sendPacket;
 
     public static void init()
     {
@@ -58,10 +76,12 @@ public class Reflection
                 NMS = "net.minecraft.server." + Bukkit.getServer().getClass().getPackage().getName().substring(23) + '.';
                 CRAFT = "org.bukkit.craftbukkit." + Bukkit.getServer().getClass().getPackage().getName().substring(23) + '.';
 
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
                 packetClass = Class.forName(NMS + "Packet");
-                getHandle = Class.forName(CRAFT + "entity.CraftPlayer").getDeclaredMethod("getHandle");
-                connection = Class.forName(NMS + "EntityPlayer").getDeclaredField("playerConnection");
-                sendPacket = Class.forName(NMS + "PlayerConnection").getDeclaredMethod("sendPacket", packetClass);
+                Class<?> playerConnection = Class.forName(NMS + "PlayerConnection");
+                getHandle = lookup.unreflect(Class.forName(CRAFT + "entity.CraftPlayer").getDeclaredMethod("getHandle")).asType(GETTER);
+                connection = lookup.unreflectGetter(Class.forName(NMS + "EntityPlayer").getDeclaredField("playerConnection")).asType(GETTER);
+                sendPacket = lookup.unreflect(playerConnection.getDeclaredMethod("sendPacket", packetClass)).asType(SENDER);
             }
             catch (Exception ex)
             {
@@ -148,15 +168,182 @@ public class Reflection
         if (c == null) return null;
         try
         {
-            for (Constructor<?> constructor : c.getDeclaredConstructors())
-                if (constructor.getGenericParameterTypes().length == args.length)
-                    return constructor.newInstance(args);
+            Constructor<?> constructor = findConstructor(c, args.length);
+            if (constructor != null)
+                return constructor.newInstance(args);
         }
         catch (Exception ex)
         { /* */ }
         return null;
     }
 
+    /**
+     * Finds the first declared constructor of a class taking the given
+     * number of arguments. Results are cached, including missing ones.
+     *
+     * @param c        class to get the constructor of
+     * @param argCount number of constructor arguments
+     *
+     * @return constructor or null if not found
+     */
+    public static Constructor<?> findConstructor(Class<?> c, int argCount)
+    {
+        ConcurrentHashMap<Integer, Object> cache = getMembers(c).constructors;
+        Integer key = argCount;
+        Object member = cache.get(key);
+        if (member == null)
+        {
+            member = MISSING;
+            for (Constructor<?> constructor : c.getDeclaredConstructors())
+            {
+                if (constructor.getGenericParameterTypes().length == argCount)
+                {
+                    member = constructor;
+                    break;
+                }
+            }
+            cache.put(key, member);
+        }
+        return member == MISSING ? null : (Constructor<?>) member;
+    }
+
+    /**
+     * Finds a field declared by a class and makes it accessible.
+     * Results are cached, including missing fields.
+     *
+     * @param c    class declaring the field
+     * @param name name of the field
+     *
+     * @return field or null if not found
+     */
+    public static Field findField(Class<?> c, String name)
+    {
+        ConcurrentHashMap<String, Object> cache = getMembers(c).fields;
+        Object member = cache.get(name);
+        if (member == null)
+        {
+            try
+            {
+                Field field = c.getDeclaredField(name);
+                if (!field.isAccessible()) field.setAccessible(true);
+                member = field;
+            }
+            catch (Exception ex)
+            {
+                member = MISSING;
+            }
+            cache.put(name, member);
+        }
+        return member == MISSING ? null : (Field) member;
+    }
+
+    /**
+     * Finds a public method of a class, including inherited ones, and
+     * makes it accessible. Results are cached, including missing methods.
+     *
+     * @param c      class to get the method from
+     * @param name   name of the method
+     * @param params parameter types of the method
+     *
+     * @return method or null if not found
+     */
+    public static Method findMethod(Class<?> c, String name, Class<?>... params)
+    {
+        Signature signature = getMembers(c).getMethod(c, name, params);
+        return signature.method == MISSING ? null : (Method) signature.method;
+    }
+
+    /**
+     * Retrieves a handle reading a field declared by a class. The
+     * handle takes the object as an Object and returns an Object.
+     * Handles are cached, so look them up once and keep them for
+     * code that runs often.
+     *
+     * @param c    class declaring the field
+     * @param name name of the field
+     *
+     * @return getter handle or null if not found
+     */
+    public static MethodHandle getGetter(Class<?> c, String name)
+    {
+        ConcurrentHashMap<String, Object> cache = getMembers(c).getters;
+        Object member = cache.get(name);
+        if (member == null)
+        {
+            Field field = findField(c, name);
+            try
+            {
+                member = field == null ? MISSING : MethodHandles.lookup().unreflectGetter(field).asType(GETTER);
+            }
+            catch (Exception ex)
+            {
+                member = MISSING;
+            }
+            cache.put(name, member);
+        }
+        return member == MISSING ? null : (MethodHandle) member;
+    }
+
+    /**
+     * Retrieves a handle setting a field declared by a class. The
+     * handle takes the object and the value as Objects. Handles are
+     * cached, so look them up once and keep them for code that runs often.
+     *
+     * @param c    class declaring the field
+     * @param name name of the field
+     *
+     * @return setter handle or null if not found
+     */
+    public static MethodHandle getSetter(Class<?> c, String name)
+    {
+        ConcurrentHashMap<String, Object> cache = getMembers(c).setters;
+        Object member = cache.get(name);
+        if (member == null)
+        {
+            Field field = findField(c, name);
+            try
+            {
+                member = field == null ? MISSING : MethodHandles.lookup().unreflectSetter(field).asType(SENDER);
+            }
+            catch (Exception ex)
+            {
+                member = MISSING;
+            }
+            cache.put(name, member);
+        }
+        return member == MISSING ? null : (MethodHandle) member;
+    }
+
+    /**
+     * Retrieves a handle for a public method of a class. The handle
+     * keeps the exact types of the method. Handles are cached, so look
+     * them up once and keep them for code that runs often.
+     *
+     * @param c      class to get the method from
+     * @param name   name of the method
+     * @param params parameter types of the method
+     *
+     * @return method handle or null if not found
+     */
+    public static MethodHandle getMethodHandle(Class<?> c, String name, Class<?>... params)
+    {
+        Signature signature = getMembers(c).getMethod(c, name, params);
+        Object handle = signature.handle;
+        if (handle == null)
+        {
+            try
+            {
+                handle = signature.method == MISSING ? MISSING : MethodHandles.lookup().unreflect((Method) signature.method);
+            }
+            catch (Exception ex)
+            {
+                handle = MISSING;
+            }
+            signature.handle = handle;
+        }
+        return handle == MISSING ? null : (MethodHandle) handle;
+    }
+
     /**
      * Tries to set a value for the object
      *
@@ -168,9 +355,8 @@ public class Reflection
     {
         try
         {
-            Field field = o.getClass().getDeclaredField(fieldName);
-            if (!field.isAccessible()) field.setAccessible(true);
-            field.set(o, value);
+            Field field = findField(o.getClass(), fieldName);
+            if (field != null) field.set(o, value);
         }
         catch (Exception ex)
         { /* Do Nothing */ }
@@ -188,9 +374,8 @@ public class Reflection
     {
         try
         {
-            Field field = o.getClass().getDeclaredField(fieldName);
-            if (!field.isAccessible()) field.setAccessible(true);
-            return field.get(o);
+            Field field = findField(o.getClass(), fieldName);
+            if (field != null) return field.get(o);
         }
         catch (Exception ex)
         { /* Do nothing */ }
@@ -209,15 +394,104 @@ public class Reflection
     {
         try
         {
-            Method method = o.getClass().getMethod(methodName, params);
-            if (!method.isAccessible()) method.setAccessible(true);
-            return method;
+            return findMethod(o.getClass(), methodName, params);
         }
         catch (Exception ex)
         { /* Do nothing */ }
         return null;
     }
 
+    /**
+     * Clears every resolved member. MCCore calls this when it is
+     * disabled so the cache doesn't keep classes from before a reload.
+     */
+    public static void clearCache()
+    {
+        members.clear();
+    }
+
+    /**
+     * Gets the resolved members of a class, creating the entry if needed
+     *
+     * @param c class to get the members of
+     *
+     * @return resolved members of the class
+     */
+    private static Members getMembers(Class<?> c)
+    {
+        Members result = members.get(c);
+        if (result == null)
+        {
+            result = new Members();
+            Members existing = members.putIfAbsent(c, result);
+            if (existing != null)
+                result = existing;
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the connection of a player. Connections are cached
+     * until {@link #clearConnection(Player)} is called for the player.
+     *
+     * @param player player to get the connection of
+     *
+     * @return player connection or null if unable to retrieve it
+     */
+    public static Object getConnection(Player player)
+    {
+        Connection con = getCachedConnection(player);
+        return con == null ? null : con.connection;
+    }
+
+    /**
+     * Removes the cached connection of a player. This is
+     * called automatically when a player leaves the server.
+     * A connection cached for a newer login of the same
+     * player is left alone.
+     *
+     * @param player player to clear the connection of
+     */
+    public static void clearConnection(Player player)
+    {
+        UUID id = player.getUniqueId();
+        Connection con = connections.get(id);
+        if (con != null)
+        {
+            Player cached = con.player.get();
+            if (cached == null || cached == player)
+                connections.remove(id, con);
+        }
+    }
+
+    /**
+     * Removes all cached player connections
+     */
+    public static void clearConnections()
+    {
+        connections.clear();
+    }
+
+    /**
+     * Tries to send a batch of packets through a connection
+     * retrieved from {@link #getConnection(Player)}
+     *
+     * @param con     player connection
+     * @param packets list of packets to send
+     */
+    public static void sendPackets(Object con, List<?> packets)
+    {
+        try
+        {
+            for (Object packet : packets)
+                sendPacket.invoke(con, packet);
+        }
+        catch (Throwable ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
     /**
      * Tries to send a packet to the player
      *
@@ -228,34 +502,156 @@ public class Reflection
     {
         try
         {
-            Object handle = getHandle.invoke(player);
-            Object con = connection.get(handle);
-            sendPacket.invoke(con, packet);
+            Connection con = getCachedConnection(player);
+            if (con != null)
+                sendPacket.invoke(con.connection, packet);
         }
-        catch (Exception ex)
+        catch (Throwable ex)
         {
             ex.printStackTrace();
         }
     }
 
     /**
-     * Tries to send a packet to the player
+     * Tries to send a batch of packets to the player. The connection
+     * is only looked up once for the whole batch, and each packet goes
+     * through the player connection so the server handles them in order.
      *
      * @param player  player to send to
      * @param packets list of packets to send
      */
-    public static void sendPackets(Player player, List<Object> packets)
+    public static void sendPackets(Player player, List<?> packets)
     {
+        Connection con = getCachedConnection(player);
+        if (con == null)
+            return;
+
         try
         {
-            Object handle = getHandle.invoke(player);
-            Object con = connection.get(handle);
             for (Object packet : packets)
-                sendPacket.invoke(con, packet);
+                sendPacket.invoke(con.connection, packet);
         }
-        catch (Exception ex)
+        catch (Throwable ex)
         {
             ex.printStackTrace();
         }
     }
+
+    /**
+     * Gets the cached connection of a player, looking it up if the player
+     * doesn't have one yet or the cached one is from a previous login
+     *
+     * @param player player to get the connection of
+     *
+     * @return connection data or null if unable to retrieve it
+     */
+    private static Connection getCachedConnection(Player player)
+    {
+        UUID id = player.getUniqueId();
+        Connection con = connections.get(id);
+        if (con != null && con.player.get() == player)
+            return con;
+
+        try
+        {
+            Object playerCon = connection.invoke(getHandle.invoke(player));
+            if (playerCon == null)
+                return null;
+
+            con = new Connection(player, playerCon);
+            connections.put(id, con);
+            return con;
+        }
+        catch (Throwable ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Members resolved for a single class
+     */
+    private static class Members
+    {
+        private final ConcurrentHashMap<String, Object>      fields       = new ConcurrentHashMap<String, Object>();
+        private final ConcurrentHashMap<String, Object>      getters      = new ConcurrentHashMap<String, Object>();
+        private final ConcurrentHashMap<String, Object>      setters      = new ConcurrentHashMap<String, Object>();
+        private final ConcurrentHashMap<Integer, Object>     constructors = new ConcurrentHashMap<Integer, Object>();
+        private final ConcurrentHashMap<String, Signature[]> methods      = new ConcurrentHashMap<String, Signature[]>();
+
+        /**
+         * Finds the resolved method with the given name and parameters,
+         * resolving it if it hasn't been looked up before. Overloads are
+         * compared by parameter types so lookups don't need to build a key.
+         */
+        private Signature getMethod(Class<?> c, String name, Class<?>[] params)
+        {
+            Signature[] overloads = methods.get(name);
+            if (overloads != null)
+                for (Signature signature : overloads)
+                    if (Arrays.equals(signature.params, params))
+                        return signature;
+
+            Object method;
+            try
+            {
+                Method found = c.getMethod(name, params);
+                if (!found.isAccessible()) found.setAccessible(true);
+                method = found;
+            }
+            catch (Exception ex)
+            {
+                method = MISSING;
+            }
+
+            synchronized (this)
+            {
+                overloads = methods.get(name);
+                if (overloads != null)
+                    for (Signature signature : overloads)
+                        if (Arrays.equals(signature.params, params))
+                            return signature;
+
+                int size = overloads == null ? 0 : overloads.length;
+                Signature[] updated = new Signature[size + 1];
+                if (overloads != null)
+                    System.arraycopy(overloads, 0, updated, 0, size);
+                Signature signature = new Signature(params.clone(), method);
+                updated[size] = signature;
+                methods.put(name, updated);
+                return signature;
+            }
+        }
+    }
+
+    /**
+     * A resolved method and the handle created for it, if any
+     */
+    private static class Signature
+    {
+        private final Class<?>[] params;
+        private final Object     method;
+        private volatile Object  handle;
+
+        private Signature(Class<?>[] params, Object method)
+        {
+            this.params = params;
+            this.method = method;
+        }
+    }
+
+    /**
+     * Connection details cached for a player
+     */
+    private static class Connection
+    {
+        private final WeakReference<Player> player;
+        private final Object                connection;
+
+        private Connection(Player player, Object connection)
+        {
+            this.player = new WeakReference<Player>(player);
+            this.connection = connection;
+        }
+    }
 }
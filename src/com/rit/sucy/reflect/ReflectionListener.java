@@ -0,0 +1,101 @@
+/**
+ * MCCore
+ * com.rit.sucy.reflect.ReflectionListener
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.reflect;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerKickEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Listener clearing cached player connections when players leave
+ */
+public class ReflectionListener implements Listener
+{
+    private final Plugin plugin;
+
+    /**
+     * Constructor
+     *
+     * @param plugin plugin reference
+     */
+    public ReflectionListener(Plugin plugin)
+    {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    /**
+     * Clear the connection on quit
+     *
+     * @param event event details
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event)
+    {
+        clear(event.getPlayer());
+    }
+
+    /**
+     * Clear the connection on kick
+     *
+     * @param event event details
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onKick(PlayerKickEvent event)
+    {
+        if (!event.isCancelled())
+            clear(event.getPlayer());
+    }
+
+    /**
+     * Clears the connection now and again on the next tick, in
+     * case other listeners of the event sent packets to the
+     * player after it was first cleared
+     *
+     * @param player player leaving the server
+     */
+    private void clear(final Player player)
+    {
+        Reflection.clearConnection(player);
+        if (plugin.isEnabled())
+        {
+            new BukkitRunnable()
+            {
+                @Override
+                public void run()
+                {
+                    Reflection.clearConnection(player);
+                }
+            }.runTask(plugin);
+        }
+    }
+}
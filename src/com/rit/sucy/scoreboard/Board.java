@@ -35,16 +35,23 @@ import org.bukkit.scoreboard.Scoreboard;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 /**
- * A manager for a scoreboard
+ * <p>A manager for a scoreboard.</p>
+ * <p>While a board is shown, changed lines are collected and sent to
+ * the player as one batch of score packets when the board updates
+ * instead of sending the whole objective again.</p>
  */
 public abstract class Board
 {
     private static Constructor objConstructor;
     private static Constructor packetConstructor;
     private static Constructor displayConstructor;
+    private static Constructor scoreConstructor;
 
     private static Method getPackets;
     private static Method getScore;
@@ -53,6 +60,13 @@ public abstract class Board
     private static Object scoreboardServer;
     private static Object sidebarCriteria;
 
+    // Packets are counted in 50ms windows to approximate server ticks
+    private static long tick;
+    private static int  tickPackets;
+    private static int  lastTickPackets;
+    private static int  peakTickPackets;
+    private static long totalPackets;
+
     /**
      * Initializes reflection usage for boards
      *
@@ -88,6 +102,78 @@ public abstract class Board
         {
             System.out.println("Failed to set up reflection for scoreboards - restoring to slow method");
         }
+
+        // Score packets are only needed for partial updates so
+        // boards can still resend everything without them
+        try
+        {
+            String pkg = Reflection.getNMSPackage();
+            scoreConstructor = Class.forName(pkg + "PacketPlayOutScoreboardScore")
+                .getConstructor(Class.forName(pkg + "ScoreboardScore"));
+        }
+        catch (Exception ex)
+        {
+            scoreConstructor = null;
+        }
+    }
+
+    /**
+     * Retrieves the total number of scoreboard packets sent
+     *
+     * @return packets sent since the server started
+     */
+    public static synchronized long getTotalPackets()
+    {
+        return totalPackets;
+    }
+
+    /**
+     * Retrieves the number of scoreboard packets sent during the
+     * last full tick
+     *
+     * @return packets sent last tick
+     */
+    public static synchronized int getPacketsLastTick()
+    {
+        countPackets(0);
+        return lastTickPackets;
+    }
+
+    /**
+     * Retrieves the most scoreboard packets sent in a single tick
+     * since the counters were last reset
+     *
+     * @return peak packets per tick
+     */
+    public static synchronized int getPeakPacketsPerTick()
+    {
+        countPackets(0);
+        return peakTickPackets;
+    }
+
+    /**
+     * Resets the packet counters
+     */
+    public static synchronized void resetPacketCounts()
+    {
+        tickPackets = 0;
+        lastTickPackets = 0;
+        peakTickPackets = 0;
+        totalPackets = 0;
+    }
+
+    private static synchronized void countPackets(int amount)
+    {
+        long now = System.currentTimeMillis() / 50;
+        if (now != tick)
+        {
+            lastTickPackets = now == tick + 1 ? tickPackets : 0;
+            tickPackets = 0;
+            tick = now;
+        }
+        tickPackets += amount;
+        totalPackets += amount;
+        peakTickPackets = Math.max(peakTickPackets, tickPackets);
     }
 
     protected final String plugin;
@@ -96,7 +182,11 @@ public abstract class Board
     private final Scoreboard scoreboard;
     private final Object objective;
 
-    private Player player;
+    private final HashMap<String, Integer>      scores  = new HashMap<String, Integer>();
+    private final LinkedHashMap<String, Object> changed = new LinkedHashMap<String, Object>();
+
+    private Player  player;
+    private boolean shown;
 
     /**
      * Constructs a new scoreboard manager with a desired type
@@ -145,6 +235,8 @@ public abstract class Board
      */
     public void setPlayer(Player player)
     {
+        if (this.player != player)
+            shown = false;
         this.player = player;
     }
 
@@ -166,9 +258,15 @@ public abstract class Board
      */
     protected void set(String label, int score)
     {
+        Integer previous = scores.put(label, score);
+        if (previous != null && previous == score)
+            return;
+
         if (scoreboard == null) {
             try {
-                setScore.invoke(getScore.invoke(scoreboardServer, label, objective), score);
+                Object scoreData = getScore.invoke(scoreboardServer, label, objective);
+                setScore.invoke(scoreData, score);
+                changed.put(label, scoreData);
             } catch (Exception ex) {
                 throw new IllegalStateException("Failed to set a score", ex);
             }
@@ -189,10 +287,12 @@ public abstract class Board
 
         if (scoreboard == null) {
             try {
-                clearDisplay();
                 List<Object> packets = (List) getPackets.invoke(scoreboardServer, objective);
-                packets.add(1, displayConstructor.newInstance(1, objective));
-                Reflection.sendPackets(player, packets);
+                packets.add(0, packetConstructor.newInstance(objective, 1));
+                packets.add(2, displayConstructor.newInstance(1, objective));
+                send(packets);
+                changed.clear();
+                shown = true;
                 return true;
             } catch (Exception ex) {
                 throw new IllegalStateException("Failed to create packets", ex);
@@ -204,6 +304,48 @@ public abstract class Board
         }
     }
 
+    /**
+     * Sends the lines that changed since the board was last sent to
+     * the player. Nothing is sent for boards that aren't currently
+     * shown as they are sent in full once they are shown. Boards are
+     * sent in full if the server doesn't support partial updates.
+     *
+     * @return true if anything was sent, false otherwise
+     */
+    protected boolean sendChanges()
+    {
+        if (player == null || scoreboard != null)
+            return false;
+        if (!shown)
+            return false;
+        if (scoreConstructor == null)
+            return showPlayer();
+        if (changed.isEmpty())
+            return false;
+
+        try {
+            ArrayList<Object> packets = new ArrayList<Object>(changed.size());
+            for (Object scoreData : changed.values())
+                packets.add(scoreConstructor.newInstance(scoreData));
+            changed.clear();
+            send(packets);
+            return true;
+        } catch (Exception ex) {
+            throw new IllegalStateException("Failed to create score packets", ex);
+        }
+    }
+
+    /**
+     * Sends a batch of packets to the player
+     *
+     * @param packets packets to send
+     */
+    private void send(List<Object> packets)
+    {
+        Reflection.sendPackets(player, packets);
+        countPackets(packets.size());
+    }
+
     /**
      * Sets the health objective for the scoreboard
      * - Recommended not to use this method -
@@ -227,7 +369,10 @@ public abstract class Board
 
         if (scoreboard == null) {
             try {
-                Reflection.sendPacket(player, packetConstructor.newInstance(objective, 1));
+                ArrayList<Object> packets = new ArrayList<Object>(1);
+                packets.add(packetConstructor.newInstance(objective, 1));
+                send(packets);
+                shown = false;
             } catch (Exception ex) {
                 throw new IllegalStateException("Failed to send clear packet", ex);
             }
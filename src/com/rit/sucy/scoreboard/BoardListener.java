@@ -69,7 +69,7 @@ public class BoardListener implements Listener
     @EventHandler
     public void onQuit(PlayerQuitEvent event)
     {
-        BoardManager.clearPlayer(event.getPlayer().getName());
+        BoardManager.clearPlayer(event.getPlayer());
     }
 
     /**
@@ -80,6 +80,6 @@ public class BoardListener implements Listener
     @EventHandler
     public void onKick(PlayerKickEvent event)
     {
-        BoardManager.clearPlayer(event.getPlayer().getName());
+        BoardManager.clearPlayer(event.getPlayer());
     }
 }
@@ -26,22 +26,34 @@
  */
 package com.rit.sucy.scoreboard;
 
+import com.rit.sucy.version.VersionManager;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.scoreboard.DisplaySlot;
 import org.bukkit.scoreboard.Objective;
 import org.bukkit.scoreboard.Scoreboard;
 
+import java.nio.charset.Charset;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Main accessor for player scoreboards
+ * <p>Main accessor for player scoreboards.</p>
+ * <p>Player data is stored by UUID with the lowercase name of each
+ * online player kept as an alias, so lookups by name or UUID are both
+ * supported. Data requested by the name of a player who isn't online
+ * is kept under their offline mode UUID until they join. The registry
+ * can be read from async tasks, though boards themselves should still
+ * only be changed on the main thread.</p>
  */
 public class BoardManager
 {
-    private static final HashMap<String, PlayerBoards> players = new HashMap<String, PlayerBoards>();
-    private static final HashMap<String, String> teams = new HashMap<String, String>();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ConcurrentHashMap<UUID, PlayerBoards> players = new ConcurrentHashMap<UUID, PlayerBoards>();
+    private static final ConcurrentHashMap<String, UUID>       names   = new ConcurrentHashMap<String, UUID>();
+    private static final ConcurrentHashMap<String, String>     teams   = new ConcurrentHashMap<String, String>();
 
     private static Scoreboard scoreboard;
 
@@ -49,10 +61,35 @@ public class BoardManager
 
     static void init(Player player)
     {
-        if (scoreboardUsed && player != null)
+        if (player == null)
+            return;
+
+        alias(player);
+        if (scoreboardUsed)
             player.setScoreboard(scoreboard);
     }
 
+    /**
+     * Adds the name alias for an online player, moving over any data
+     * that was set up by name before they joined
+     *
+     * @param player online player
+     */
+    private static void alias(Player player)
+    {
+        UUID id = player.getUniqueId();
+        if (id.equals(names.put(player.getName().toLowerCase(), id)))
+            return;
+
+        UUID offline = getOfflineUUID(player.getName());
+        if (!offline.equals(id))
+        {
+            PlayerBoards boards = players.remove(offline);
+            if (boards != null)
+                players.putIfAbsent(id, boards);
+        }
+    }
+
     /**
      * Initializes the scoreboard utility
      */
@@ -74,9 +111,94 @@ public class BoardManager
      */
     public static PlayerBoards getPlayerBoards(String player)
     {
-        if (!players.containsKey(player.toLowerCase()))
-            players.put(player.toLowerCase(), new PlayerBoards(player));
-        return players.get(player.toLowerCase());
+        return getPlayerBoards(resolve(player), player);
+    }
+
+    /**
+     * Retrieves scoreboard data for a player
+     *
+     * @param player player
+     *
+     * @return player's scoreboard data
+     */
+    public static PlayerBoards getPlayerBoards(Player player)
+    {
+        alias(player);
+        return getPlayerBoards(player.getUniqueId(), player.getName());
+    }
+
+    /**
+     * Retrieves existing scoreboard data for a player
+     *
+     * @param id UUID of the player
+     *
+     * @return player's scoreboard data or null if they don't have any
+     */
+    public static PlayerBoards getPlayerBoards(UUID id)
+    {
+        return players.get(id);
+    }
+
+    /**
+     * Retrieves scoreboard data for a player, creating it if it doesn't exist
+     *
+     * @param id   UUID of the player
+     * @param name name of the player
+     *
+     * @return player's scoreboard data
+     */
+    private static PlayerBoards getPlayerBoards(UUID id, String name)
+    {
+        PlayerBoards boards = players.get(id);
+        if (boards == null)
+        {
+            boards = new PlayerBoards(name);
+            PlayerBoards existing = players.putIfAbsent(id, boards);
+            if (existing != null)
+                boards = existing;
+        }
+        return boards;
+    }
+
+    /**
+     * <p>Finds the UUID for a player name, using the alias from when the
+     * player joined if there is one. Names of players that aren't online
+     * get the same UUID the server would give them in offline mode.</p>
+     * <p>Only online players get an alias, and the server is only
+     * checked for them on the main thread.</p>
+     *
+     * @param name player name
+     *
+     * @return UUID for the name
+     */
+    private static UUID resolve(String name)
+    {
+        UUID id = names.get(name.toLowerCase());
+        if (id != null)
+            return id;
+
+        if (Bukkit.isPrimaryThread())
+        {
+            Player player = VersionManager.getPlayer(name);
+            if (player != null)
+            {
+                alias(player);
+                return player.getUniqueId();
+            }
+        }
+        return getOfflineUUID(name);
+    }
+
+    /**
+     * Gets the UUID offline mode servers use for a name
+     *
+     * @param name player name
+     *
+     * @return offline mode UUID
+     */
+    private static UUID getOfflineUUID(String name)
+    {
+        return UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(UTF_8));
     }
 
     /**
@@ -114,6 +236,9 @@ public class BoardManager
      * <p>Sets the team for a player</p>
      * <p>If the team doesn't exist, it will be created
      * with a prefix matching its name</p>
+     * <p>The player stays on the team when they leave the server,
+     * so the plugin setting the team is responsible for clearing
+     * it with {@link #clearTeam(String)} when it is no longer used.</p>
      *
      * @param player player to set to the team
      * @param team   team to add the player to
@@ -137,10 +262,11 @@ public class BoardManager
      */
     public static void clearTeam(String player)
     {
-        if (!teams.containsKey(player))
+        String team = teams.remove(player);
+        if (team == null)
             return;
 
-        org.bukkit.scoreboard.Team sbTeam = scoreboard.getTeam(teams.remove(player));
+        org.bukkit.scoreboard.Team sbTeam = scoreboard.getTeam(team);
         if (sbTeam != null) sbTeam.removeEntry(player);
     }
 
@@ -257,7 +383,18 @@ public class BoardManager
      */
     public static void clearPlayer(String name)
     {
-        if (players.containsKey(name.toLowerCase()))
-            players.remove(name.toLowerCase());
+        UUID id = names.remove(name.toLowerCase());
+        players.remove(id != null ? id : getOfflineUUID(name));
+    }
+
+    /**
+     * Clears data for a player
+     *
+     * @param player player to clear data for
+     */
+    public static void clearPlayer(Player player)
+    {
+        names.remove(player.getName().toLowerCase(), player.getUniqueId());
+        players.remove(player.getUniqueId());
     }
 }
@@ -31,15 +31,19 @@ import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Scoreboard data for a player
  */
 public class PlayerBoards
 {
+    private static final AtomicInteger nextSlot = new AtomicInteger();
+
     private final List<Board> boards = new ArrayList<Board>();
 
     private final String player;
+    private final int    slot;
 
     private Board  currentBoard;
 
@@ -83,9 +87,22 @@ public class PlayerBoards
     public PlayerBoards(String playerName)
     {
         this.player = playerName;
+        this.slot = nextSlot.getAndIncrement() & Integer.MAX_VALUE;
         cycling = true;
     }
 
+    /**
+     * Retrieves the update slot of the player. Players are given
+     * consecutive slots so their board updates are spread across
+     * different ticks.
+     *
+     * @return update slot
+     */
+    public int getSlot()
+    {
+        return slot;
+    }
+
     /**
      * @return owning player reference
      */
@@ -37,6 +37,10 @@ public class StatBoard extends Board
     private final List<StatHolder> holders = new ArrayList<StatHolder>();
     private final List<String>     stats   = new ArrayList<String>();
 
+    private int              interval = 10;
+    private boolean          async    = false;
+    private volatile boolean computing;
+
     /**
      * Constructor
      *
@@ -76,12 +80,119 @@ public class StatBoard extends Board
      */
     public void update()
     {
+        int index = 0;
         for (StatHolder holder : holders)
         {
-            int index = 0;
             for (Integer value : holder.getValues())
                 set(stats.get(index++), value);
         }
-        showPlayer();
+        sendChanges();
+    }
+
+    /**
+     * Retrieves a copy of the stat holders of the board. This must be
+     * called on the main thread, and the copy can then be passed to
+     * {@link #collectValues(List)} from another thread.
+     *
+     * @return copy of the stat holders in display order
+     */
+    public List<StatHolder> getHolders()
+    {
+        return new ArrayList<StatHolder>(holders);
+    }
+
+    /**
+     * Retrieves the current values of every stat without applying
+     * them. Used by the UpdateTask to fetch values off the main thread
+     * for boards that have async stats enabled.
+     *
+     * @param holders stat holders from {@link #getHolders()}
+     *
+     * @return current stat values in display order
+     */
+    public static List<Integer> collectValues(List<StatHolder> holders)
+    {
+        List<Integer> result = new ArrayList<Integer>();
+        for (StatHolder holder : holders)
+            result.addAll(holder.getValues());
+        return result;
+    }
+
+    /**
+     * Applies stat values from {@link #collectValues(List)} and sends
+     * any changes to the player. This must be called on the main thread.
+     *
+     * @param values stat values in display order
+     */
+    public void applyValues(List<Integer> values)
+    {
+        int count = Math.min(values.size(), stats.size());
+        for (int i = 0; i < count; i++)
+            set(stats.get(i), values.get(i));
+        sendChanges();
+    }
+
+    /**
+     * Sets how often the board is updated by the UpdateTask
+     *
+     * @param ticks ticks between updates
+     */
+    public void setUpdateInterval(int ticks)
+    {
+        interval = Math.max(1, ticks);
+    }
+
+    /**
+     * Retrieves how often the board is updated by the UpdateTask
+     *
+     * @return ticks between updates
+     */
+    public int getUpdateInterval()
+    {
+        return interval;
+    }
+
+    /**
+     * Sets whether or not the stat values are retrieved off the main
+     * thread. Only enable this if every StatHolder of the board is safe
+     * to call from another thread.
+     *
+     * @param async true to retrieve values asynchronously
+     */
+    public void setAsyncStats(boolean async)
+    {
+        this.async = async;
+    }
+
+    /**
+     * Checks whether or not stat values are retrieved off the main thread
+     *
+     * @return true if retrieved asynchronously, false otherwise
+     */
+    public boolean isAsyncStats()
+    {
+        return async;
+    }
+
+    /**
+     * Checks whether or not stat values are currently being
+     * retrieved off the main thread
+     *
+     * @return true if retrieving, false otherwise
+     */
+    boolean isComputing()
+    {
+        return computing;
+    }
+
+    /**
+     * Marks whether or not stat values are being retrieved
+     * off the main thread
+     *
+     * @param computing true if retrieving, false otherwise
+     */
+    void setComputing(boolean computing)
+    {
+        this.computing = computing;
     }
 }
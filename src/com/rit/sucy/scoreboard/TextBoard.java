@@ -89,5 +89,6 @@ public class TextBoard extends Board
         int index = 15;
         for (String message : messages)
             set(message, index--);
+        sendChanges();
     }
 }
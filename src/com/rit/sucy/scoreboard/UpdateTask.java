@@ -26,14 +26,29 @@
  */
 package com.rit.sucy.scoreboard;
 
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
 
+import java.util.List;
+
 /**
- * Updates stat boards periodically
+ * <p>Updates stat boards periodically.</p>
+ * <p>The task runs every tick but each player only has their board
+ * updated on the ticks matching their update slot, so a board with
+ * a 10 tick interval updates a tenth of the players each tick instead
+ * of all of them at once.</p>
+ * <p>Boards with async stats have their values retrieved off the main
+ * thread and then applied back on the main thread, as long as the
+ * board is still the one shown to a player who is still online.</p>
  */
 public class UpdateTask extends BukkitRunnable
 {
+    private final Plugin plugin;
+
+    private long tick;
+    private int  lastUpdated;
+    private int  peakUpdated;
 
     /**
      * Constructor
@@ -42,21 +57,113 @@ public class UpdateTask extends BukkitRunnable
      */
     public UpdateTask(Plugin plugin)
     {
-        runTaskTimer(plugin, 10, 10);
+        this.plugin = plugin;
+        runTaskTimer(plugin, 1, 1);
+    }
+
+    /**
+     * Retrieves the number of boards updated on the last tick
+     *
+     * @return boards updated last tick
+     */
+    public int getLastUpdated()
+    {
+        return lastUpdated;
     }
 
     /**
-     * Updates stat boards
+     * Retrieves the most boards updated on a single tick
+     *
+     * @return peak boards updated per tick
+     */
+    public int getPeakUpdated()
+    {
+        return peakUpdated;
+    }
+
+    /**
+     * Updates the stat boards whose players are due this tick
      */
     @Override
     public void run()
     {
+        tick++;
+        int updated = 0;
         for (PlayerBoards player : BoardManager.getAllPlayerBoards())
         {
             if (!player.hasActiveBoard()) continue;
             Board board = player.getActiveBoard();
-            if (board instanceof StatBoard)
-                ((StatBoard) board).update();
+            if (!(board instanceof StatBoard)) continue;
+
+            StatBoard stats = (StatBoard) board;
+            if ((tick + player.getSlot()) % stats.getUpdateInterval() != 0) continue;
+
+            if (stats.isAsyncStats())
+                updateAsync(player, stats);
+            else
+                stats.update();
+            updated++;
         }
+        lastUpdated = updated;
+        peakUpdated = Math.max(peakUpdated, updated);
+    }
+
+    /**
+     * Retrieves the board's stats off the main thread before applying
+     * them back on the main thread. Boards still waiting on the last
+     * retrieval are skipped.
+     *
+     * @param player player data owning the board
+     * @param board  board to update
+     */
+    private void updateAsync(final PlayerBoards player, final StatBoard board)
+    {
+        if (board.isComputing()) return;
+        board.setComputing(true);
+        final List<StatHolder> holders = board.getHolders();
+        new BukkitRunnable()
+        {
+            @Override
+            public void run()
+            {
+                final List<Integer> values;
+                try
+                {
+                    values = StatBoard.collectValues(holders);
+                }
+                catch (RuntimeException ex)
+                {
+                    board.setComputing(false);
+                    throw ex;
+                }
+                new BukkitRunnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        board.setComputing(false);
+                        if (isShown(player, board))
+                            board.applyValues(values);
+                    }
+                }.runTask(plugin);
+            }
+        }.runTaskAsynchronously(plugin);
+    }
+
+    /**
+     * Checks whether or not the board is still active for the
+     * player and the player is still online
+     *
+     * @param player player data owning the board
+     * @param board  board to check
+     *
+     * @return true if the board should still be updated, false otherwise
+     */
+    private boolean isShown(PlayerBoards player, Board board)
+    {
+        if (player.getActiveBoard() != board) return false;
+
+        Player online = player.getPlayer();
+        return online != null && BoardManager.getPlayerBoards(online.getUniqueId()) == player;
     }
 }
@@ -55,41 +55,33 @@ public class TextSizer
         if (message == null)
             throw new IllegalArgumentException("Invalid string - null");
 
-        byte boldBonus = 0;
-        boolean skip = false;
-
-        int index = 0;
+        int boldBonus = 0;
         int size = 0;
-        for (char c : message.toCharArray())
+        int length = message.length();
+        for (int index = 0; index < length; index++)
         {
-            if (skip)
-            {
-                skip = false;
-                index++;
-                continue;
-            }
+            char c = message.charAt(index);
 
             // Chat colors don't add to the size, but bold adds 1 to all characters affected
             if (c == ChatColor.COLOR_CHAR)
             {
-                skip = true;
-                if (message.length() > index + 1)
+                if (++index < length)
                 {
-                    if (message.charAt(index + 1) == 'l')
+                    char code = message.charAt(index);
+                    if (code == 'l')
                         boldBonus = 1;
-                    else if (message.charAt(index + 1) == 'r')
+                    else if (code == 'r')
                         boldBonus = 0;
                 }
             }
 
             // Add the size of each character other than what's used for chat colors
+            else if (c < widths.length) size += widths[c] + boldBonus;
             else
             {
-                if (lengths.containsKey(c)) size += lengths.get(c) + boldBonus;
-                else size += 6 + boldBonus;
+                Byte width = lengths.get(c);
+                size += (width == null ? DEFAULT_WIDTH : width) + boldBonus;
             }
-
-            index++;
         }
 
         return size;
@@ -509,4 +501,24 @@ public class TextSizer
             put(',', (byte) 2);
             put('i', (byte) 2);
         }};
+
+    /**
+     * Width of characters that don't have their own length
+     */
+    private static final byte DEFAULT_WIDTH = 6;
+
+    /**
+     * The lengths for each ASCII character, indexed by the character
+     * so measuring doesn't need to box characters for map lookups
+     */
+    private static final byte[] widths = new byte[128];
+
+    static
+    {
+        Arrays.fill(widths, DEFAULT_WIDTH);
+        for (Character c : lengths.keySet())
+        {
+            if (c < widths.length) widths[c] = lengths.get(c);
+        }
+    }
 }
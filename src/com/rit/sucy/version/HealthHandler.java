@@ -0,0 +1,182 @@
+/**
+ * MCCore
+ * com.rit.sucy.version.HealthHandler
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.version;
+
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.entity.EntityDamageEvent;
+
+/**
+ * <p>Version specific handling of damage and health, chosen once
+ * when the server version is known so that {@link VersionManager}
+ * doesn't need to check the version every time.</p>
+ * <p>Servers on 1.5.2 and earlier only support integer values for
+ * damage and health while later versions use doubles.</p>
+ */
+abstract class HealthHandler
+{
+    /**
+     * Handler for servers using integer damage and health
+     */
+    static final HealthHandler LEGACY = new Legacy();
+
+    /**
+     * Handler for servers using double damage and health
+     */
+    static final HealthHandler MODERN = new Modern();
+
+    /**
+     * Gets the handler for a server version
+     *
+     * @param version server version
+     *
+     * @return handler for the version
+     */
+    static HealthHandler forVersion(int version)
+    {
+        return version <= VersionManager.V1_5_2 ? LEGACY : MODERN;
+    }
+
+    /**
+     * Damages an entity, giving credit to a damager
+     *
+     * @param target  target to damage
+     * @param damager entity dealing the damage
+     * @param damage  damage to deal
+     */
+    abstract void damage(LivingEntity target, LivingEntity damager, double damage);
+
+    /**
+     * Damages an entity
+     *
+     * @param target target to damage
+     * @param damage damage to deal
+     */
+    abstract void damage(LivingEntity target, double damage);
+
+    /**
+     * Sets the max health of an entity, keeping how much
+     * health the entity is missing the same
+     *
+     * @param entity entity to set the health for
+     * @param amount amount to set the max health to
+     */
+    abstract void setMaxHealth(LivingEntity entity, double amount);
+
+    /**
+     * Sets the health of an entity
+     *
+     * @param entity entity to set the health for
+     * @param health health to set
+     */
+    abstract void setHealth(LivingEntity entity, double health);
+
+    /**
+     * Sets the damage of an event
+     *
+     * @param event  event details
+     * @param damage damage to set
+     */
+    abstract void setDamage(EntityDamageEvent event, double damage);
+
+    /**
+     * Integer values for 1.5.2 and earlier
+     */
+    private static class Legacy extends HealthHandler
+    {
+        @Override
+        void damage(LivingEntity target, LivingEntity damager, double damage)
+        {
+            target.damage((int) damage, damager);
+        }
+
+        @Override
+        void damage(LivingEntity target, double damage)
+        {
+            target.damage((int) damage);
+        }
+
+        @Override
+        void setMaxHealth(LivingEntity entity, double amount)
+        {
+            double prevMax = entity.getMaxHealth();
+            double prevHealth = entity.getHealth();
+            entity.setMaxHealth((int) amount);
+            entity.setHealth(Math.min(Math.max(1, (int) prevHealth + (int) amount - (int) prevMax), (int) amount));
+        }
+
+        @Override
+        void setHealth(LivingEntity entity, double health)
+        {
+            entity.setHealth((int) health);
+        }
+
+        @Override
+        void setDamage(EntityDamageEvent event, double damage)
+        {
+            event.setDamage((int) damage);
+        }
+    }
+
+    /**
+     * Double values for 1.6.2 and later
+     */
+    private static class Modern extends HealthHandler
+    {
+        @Override
+        void damage(LivingEntity target, LivingEntity damager, double damage)
+        {
+            target.damage(damage, damager);
+        }
+
+        @Override
+        void damage(LivingEntity target, double damage)
+        {
+            target.damage(damage);
+        }
+
+        @Override
+        void setMaxHealth(LivingEntity entity, double amount)
+        {
+            double prevMax = entity.getMaxHealth();
+            double prevHealth = entity.getHealth();
+            entity.setMaxHealth(amount);
+            entity.setHealth(Math.min(Math.max(1, prevHealth + amount - prevMax), (int) amount));
+        }
+
+        @Override
+        void setHealth(LivingEntity entity, double health)
+        {
+            entity.setHealth(health);
+        }
+
+        @Override
+        void setDamage(EntityDamageEvent event, double damage)
+        {
+            event.setDamage(damage);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * MCCore
+ * com.rit.sucy.version.VersionListener
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Steven Sucy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software") to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.rit.sucy.version;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerKickEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Listener keeping the cached online player snapshot up to date
+ */
+public class VersionListener implements Listener
+{
+
+    /**
+     * Constructor
+     *
+     * @param plugin plugin reference
+     */
+    public VersionListener(Plugin plugin)
+    {
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        VersionManager.invalidateOnlinePlayers();
+    }
+
+    /**
+     * Rebuild the snapshot when a player joins
+     *
+     * @param event event details
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent event)
+    {
+        VersionManager.invalidateOnlinePlayers();
+    }
+
+    /**
+     * Remove the player from the snapshot on quit
+     *
+     * @param event event details
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event)
+    {
+        VersionManager.refreshOnlinePlayers(event.getPlayer());
+    }
+
+    /**
+     * Remove the player from the snapshot on kick
+     *
+     * @param event event details
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onKick(PlayerKickEvent event)
+    {
+        if (!event.isCancelled())
+        {
+            VersionManager.refreshOnlinePlayers(event.getPlayer());
+        }
+    }
+}
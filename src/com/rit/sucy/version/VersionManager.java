@@ -26,6 +26,7 @@
  */
 package com.rit.sucy.version;
 
+import com.rit.sucy.player.PlayerIdCache;
 import com.rit.sucy.player.PlayerUUIDs;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -34,7 +35,9 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.entity.EntityDamageEvent;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.regex.Pattern;
@@ -48,6 +51,9 @@ public class VersionManager
     private static final String  ID_REGEX   = ".{8}-.{4}-.{4}-.{4}-.{12}";
     private static final Pattern ID_PATTERN = Pattern.compile(ID_REGEX);
 
+    private static volatile List<Player> onlinePlayers;
+    private static volatile List<Player> lastOnlinePlayers = Collections.emptyList();
+
     public static int V1_5_2 = 10502;
     public static int V1_6_2 = 10602;
     public static int V1_6_4 = 10604;
@@ -154,6 +160,8 @@ public class VersionManager
     private static ServerType server;
     private static int version = -1;
 
+    private static HealthHandler health = HealthHandler.forVersion(version);
+
     /**
      * <p>Initializes the version data</p>
      * <p>MCCore already calls this by default and
@@ -196,6 +204,12 @@ public class VersionManager
                 Bukkit.getLogger().info("Server version: " + version);
             }
         }
+
+        // Pick the damage/health handling for the version
+        finally
+        {
+            health = HealthHandler.forVersion(version);
+        }
     }
 
     /**
@@ -293,14 +307,7 @@ public class VersionManager
         int ticks = target.getNoDamageTicks();
         target.setNoDamageTicks(0);
 
-        // 1.5.2 and earlier used integer values
-        if (isVersionAtMost(V1_5_2))
-        {
-            target.damage((int) damage, damager);
-        }
-
-        // 1.6.2 and beyond use double values
-        else target.damage(damage, damager);
+        health.damage(target, damager, damage);
 
         // Reset damage timer to before the damage was applied
         target.setNoDamageTicks(ticks);
@@ -325,14 +332,7 @@ public class VersionManager
         int ticks = target.getNoDamageTicks();
         target.setNoDamageTicks(0);
 
-        // 1.5.2 and earlier used integer values
-        if (isVersionAtMost(V1_5_2))
-        {
-            target.damage((int) damage);
-        }
-
-        // 1.6.2 and beyond use double values
-        else target.damage(damage);
+        health.damage(target, damage);
 
         // Reset damage timer to before the damage was applied
         target.setNoDamageTicks(ticks);
@@ -349,22 +349,7 @@ public class VersionManager
      */
     public static void setMaxHealth(LivingEntity entity, double amount)
     {
-        double prevMax = entity.getMaxHealth();
-        double prevHealth = entity.getHealth();
-
-        // 1.5.2 and earlier used integer values
-        if (isVersionAtMost(V1_5_2))
-        {
-            entity.setMaxHealth((int) amount);
-            entity.setHealth(Math.min(Math.max(1, (int)prevHealth + (int)amount - (int)prevMax), (int)amount));
-        }
-
-        // 1.6.2 and beyond use double values
-        else
-        {
-            entity.setMaxHealth(amount);
-            entity.setHealth(Math.min(Math.max(1, prevHealth + amount - prevMax), (int)amount));
-        }
+        health.setMaxHealth(entity, amount);
     }
 
     /**
@@ -380,17 +365,7 @@ public class VersionManager
     {
 
         // Cannot go above the enemy health
-        double health = entity.getHealth() + amount;
-        health = Math.min(entity.getMaxHealth(), health);
-
-        // 1.5.2 and earlier used integer values
-        if (isVersionAtMost(V1_5_2))
-        {
-            entity.setHealth((int) health);
-        }
-
-        // 1.6.2 and later use double values
-        else entity.setHealth(health);
+        health.setHealth(entity, Math.min(entity.getMaxHealth(), entity.getHealth() + amount));
     }
 
     /**
@@ -404,15 +379,7 @@ public class VersionManager
      */
     public static void setDamage(EntityDamageEvent event, double damage)
     {
-
-        // 1.5.2 and earlier used integer values
-        if (isVersionAtMost(V1_5_2))
-        {
-            event.setDamage((int) damage);
-        }
-
-        // 1.6.2 and later used double values
-        else event.setDamage(damage);
+        health.setDamage(event, damage);
     }
 
     /**
@@ -466,7 +433,9 @@ public class VersionManager
      * by version.</p>
      * <p>If querying is allowed, the server is at least 1.7.5, and the
      * player has not played before, then this will query the Minecraft
-     * server for the UUID which can cause lag.</p>
+     * server for the UUID which can cause lag. Results are cached, and
+     * names that couldn't be found aren't queried again for a while. Use
+     * {@link PlayerUUIDs#getUUIDAsync(String)} to avoid waiting.</p>
      * <p>If querying is not allowed, this will return null when the
      * player has not played before and the server version is at least
      * 1.7.5.</p>
@@ -486,22 +455,122 @@ public class VersionManager
             UUID id = PlayerUUIDs.getUUID(name);
             if (id == null)
             {
-                if (allowQuery) return Bukkit.getOfflinePlayer(name);
-                else return null;
+                if (!allowQuery) return null;
+
+                id = PlayerIdCache.resolve(name);
+                if (id == null)
+                {
+                    // Players known to be missing get the same offline UUID the server would give them
+                    if (PlayerIdCache.isMissing(name) || !Bukkit.getOnlineMode())
+                        id = PlayerIdCache.getOfflineUUID(name);
+
+                    // The lookup timed out, so leave it to the server
+                    else return Bukkit.getOfflinePlayer(name);
+                }
             }
-            else return Bukkit.getOfflinePlayer(id);
+            return Bukkit.getOfflinePlayer(id);
         }
         else return Bukkit.getOfflinePlayer(name);
     }
 
     /**
      * Gets the list of online players, handling differences with the new
-     * 1.9 changes.
+     * 1.9 changes. This copies the cached snapshot so the returned array
+     * can be freely modified. Use {@link #getOnlinePlayerList()} to avoid
+     * the copy.
+     *
+     * @return array of online players
+     */
+    public static Player[] getOnlinePlayers()
+    {
+        List<Player> players = getOnlinePlayerList();
+        return players.toArray(new Player[players.size()]);
+    }
+
+    /**
+     * <p>Retrieves an immutable snapshot of the online players. The
+     * snapshot is cached and only rebuilt when players join or leave,
+     * so this doesn't allocate anything.</p>
+     * <p>Off the main thread, the server can't be asked for the players,
+     * so this gives the last snapshot built on the main thread even if
+     * it is outdated, or an empty list if none has been built yet.</p>
+     * <p>The returned list supports fast random access, so iterating
+     * it by index avoids creating an iterator:</p>
+     * <pre>
+     * List&lt;Player&gt; players = VersionManager.getOnlinePlayerList();
+     * for (int i = 0; i &lt; players.size(); i++)
+     * {
+     *     Player player = players.get(i);
+     * }
+     * </pre>
+     *
+     * @return snapshot of the online players
+     */
+    public static List<Player> getOnlinePlayerList()
+    {
+        List<Player> players = onlinePlayers;
+        if (players == null)
+        {
+            if (!Bukkit.isPrimaryThread()) return lastOnlinePlayers;
+            players = refreshOnlinePlayers(null);
+        }
+        return players;
+    }
+
+    /**
+     * Retrieves the number of online players from the cached snapshot
+     *
+     * @return number of online players
+     */
+    public static int getOnlineCount()
+    {
+        return getOnlinePlayerList().size();
+    }
+
+    /**
+     * Marks the online player snapshot as outdated so that it is rebuilt
+     * the next time it is used. This is called automatically when a
+     * player joins.
+     */
+    public static synchronized void invalidateOnlinePlayers()
+    {
+        onlinePlayers = null;
+    }
+
+    /**
+     * Rebuilds the online player snapshot. The server still lists a player
+     * while their quit event is handled, so the leaving player can be
+     * left out of the new snapshot. This must be called on the main thread.
+     *
+     * @param leaving player that is leaving or null if none
+     *
+     * @return the new snapshot
+     */
+    public static synchronized List<Player> refreshOnlinePlayers(Player leaving)
+    {
+        ArrayList<Player> list = new ArrayList<Player>();
+        for (Player player : loadOnlinePlayers())
+        {
+            if (player != leaving)
+            {
+                list.add(player);
+            }
+        }
+        List<Player> players = Collections.unmodifiableList(Arrays.asList(list.toArray(new Player[list.size()])));
+        onlinePlayers = players;
+        lastOnlinePlayers = players;
+        return players;
+    }
+
+    /**
+     * Gets the list of online players from the server, handling differences
+     * with the new 1.9 changes.
      *
      * @return array of online players
      */
     @SuppressWarnings("unchecked")
-    public static Player[] getOnlinePlayers() {
+    private static Player[] loadOnlinePlayers()
+    {
         if (isVersionAtLeast(V1_8_8)) {
             ArrayList<Player> list = new ArrayList<Player>();
             Collection<? extends Player> online = Bukkit.getOnlinePlayers();
@@ -0,0 +1,89 @@
+package com.rit.sucy.economy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * MCCore © 2017
+ * com.rit.sucy.economy.BalanceIndexTest
+ */
+public class BalanceIndexTest {
+
+    @Test
+    public void getRank_ordersByBalanceThenKey() {
+        BalanceIndex index = new BalanceIndex();
+        index.update("b", 10);
+        index.update("a", 10);
+        index.update("c", 50);
+        index.update("d", -5);
+
+        Assert.assertEquals(1, index.getRank("c"));
+        Assert.assertEquals(2, index.getRank("a"));
+        Assert.assertEquals(3, index.getRank("b"));
+        Assert.assertEquals(4, index.getRank("d"));
+        Assert.assertEquals(-1, index.getRank("missing"));
+    }
+
+    @Test
+    public void update_movesExistingAccount() {
+        BalanceIndex index = new BalanceIndex();
+        index.update("a", 1);
+        index.update("b", 2);
+        index.update("a", 3);
+
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(Arrays.asList("a", "b"), index.getTop(5));
+        Assert.assertEquals(3, index.getBalance("a"), 0);
+    }
+
+    @Test
+    public void remove_updatesRanks() {
+        BalanceIndex index = new BalanceIndex();
+        index.update("a", 3);
+        index.update("b", 2);
+        index.update("c", 1);
+        index.remove("a");
+
+        Assert.assertEquals(1, index.getRank("b"));
+        Assert.assertEquals("c", index.getKey(2));
+        Assert.assertNull(index.getKey(3));
+    }
+
+    @Test
+    public void randomUpdates_matchSortedOrder() {
+        BalanceIndex index = new BalanceIndex();
+        HashMap<String, Double> balances = new HashMap<String, Double>();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String key = "p" + random.nextInt(500);
+            if (random.nextInt(10) == 0) {
+                index.remove(key);
+                balances.remove(key);
+            }
+            else {
+                double balance = random.nextInt(1000);
+                index.update(key, balance);
+                balances.put(key, balance);
+            }
+        }
+
+        final HashMap<String, Double> values = balances;
+        ArrayList<String> expected = new ArrayList<String>(balances.keySet());
+        Collections.sort(expected, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int result = Double.compare(values.get(b), values.get(a));
+                return result != 0 ? result : a.compareTo(b);
+            }
+        });
+
+        Assert.assertEquals(expected, index.getTop(expected.size()));
+        Assert.assertEquals(expected.subList(10, 30), index.getRange(11, 20));
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(i + 1, index.getRank(expected.get(i)));
+            Assert.assertEquals(expected.get(i), index.getKey(i + 1));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.rit.sucy.economy;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+
+/**
+ * MCCore © 2017
+ * com.rit.sucy.economy.TransactionJournalTest
+ */
+public class TransactionJournalTest {
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("journal", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void replay_lastBalanceWins() throws IOException {
+        TransactionJournal journal = new TransactionJournal(folder, SyncPolicy.NEVER);
+        journal.record(TransactionJournal.DEPOSIT, "a", 5, 5);
+        journal.record(TransactionJournal.DEPOSIT, "b", 3, 3);
+        journal.record(TransactionJournal.WITHDRAW, "a", 2, 3);
+        journal.close();
+
+        HashMap<String, Double> balances = replayFresh();
+        Assert.assertEquals(2, balances.size());
+        Assert.assertEquals(3, balances.get("a"), 0);
+        Assert.assertEquals(3, balances.get("b"), 0);
+    }
+
+    @Test
+    public void replay_spansSegments() throws IOException {
+        TransactionJournal journal = new TransactionJournal(folder, SyncPolicy.NEVER, 64, 1000);
+        for (int i = 1; i <= 20; i++) {
+            journal.record(TransactionJournal.SET, "p" + (i % 4), i, i);
+        }
+        journal.close();
+
+        HashMap<String, Double> balances = replayFresh();
+        Assert.assertEquals(4, balances.size());
+        Assert.assertEquals(20, balances.get("p0"), 0);
+        Assert.assertEquals(19, balances.get("p3"), 0);
+    }
+
+    @Test
+    public void snapshot_keepsLaterRecords() throws IOException {
+        TransactionJournal journal = new TransactionJournal(folder, SyncPolicy.NEVER);
+        journal.record(TransactionJournal.SET, "a", 1, 1);
+        journal.record(TransactionJournal.SET, "b", 2, 2);
+        journal.snapshot();
+        journal.record(TransactionJournal.SET, "a", 7, 7);
+        journal.snapshot();
+        journal.record(TransactionJournal.SET, "c", 9, 9);
+        journal.close();
+
+        HashMap<String, Double> balances = replayFresh();
+        Assert.assertEquals(3, balances.size());
+        Assert.assertEquals(7, balances.get("a"), 0);
+        Assert.assertEquals(2, balances.get("b"), 0);
+        Assert.assertEquals(9, balances.get("c"), 0);
+        Assert.assertFalse(new File(folder, "snapshot.tmp").exists());
+    }
+
+    @Test
+    public void replay_ignoresTruncatedTail() throws IOException {
+        File segment = writeSegment();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.setLength(file.length() - 5);
+        file.close();
+
+        HashMap<String, Double> balances = replayFresh();
+        Assert.assertEquals(1, balances.size());
+        Assert.assertEquals(4, balances.get("a"), 0);
+    }
+
+    @Test
+    public void replay_ignoresZeroFilledTail() throws IOException {
+        File segment = writeSegment();
+        appendBytes(segment, new byte[64]);
+
+        HashMap<String, Double> balances = replayFresh();
+        Assert.assertEquals(2, balances.size());
+        Assert.assertEquals(6, balances.get("b"), 0);
+    }
+
+    @Test
+    public void replay_ignoresGarbledTail() throws IOException {
+        File segment = writeSegment();
+
+        // A record whose key length claims more bytes of invalid UTF-8
+        byte[] tail = new byte[17];
+        tail[7] = 1;
+        tail[9] = 0;
+        tail[10] = 6;
+        for (int i = 11; i < tail.length; i++) {
+            tail[i] = (byte) 0xFF;
+        }
+        appendBytes(segment, tail);
+
+        HashMap<String, Double> balances = replayFresh();
+        Assert.assertEquals(2, balances.size());
+        Assert.assertEquals(4, balances.get("a"), 0);
+    }
+
+    @Test
+    public void record_skipsKeyTooLongToEncode() throws IOException {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 70000; i++) {
+            key.append('k');
+        }
+
+        TransactionJournal journal = new TransactionJournal(folder, SyncPolicy.NEVER);
+        journal.record(TransactionJournal.SET, "a", 1, 1);
+        journal.record(TransactionJournal.SET, key.toString(), 2, 2);
+        journal.record(TransactionJournal.SET, "b", 3, 3);
+        journal.close();
+
+        HashMap<String, Double> balances = replayFresh();
+        Assert.assertEquals(2, balances.size());
+        Assert.assertEquals(3, balances.get("b"), 0);
+        Assert.assertEquals(2, journal.getRecordCount());
+    }
+
+    private File writeSegment() throws IOException {
+        TransactionJournal journal = new TransactionJournal(folder, SyncPolicy.NEVER);
+        journal.record(TransactionJournal.DEPOSIT, "a", 4, 4);
+        journal.record(TransactionJournal.DEPOSIT, "b", 6, 6);
+        journal.close();
+        return new File(folder, "journal-00000001.bin");
+    }
+
+    private HashMap<String, Double> replayFresh() throws IOException {
+        TransactionJournal journal = new TransactionJournal(folder, SyncPolicy.NEVER);
+        try {
+            return journal.replay();
+        } finally {
+            journal.close();
+        }
+    }
+
+    private void appendBytes(File file, byte[] bytes) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file, true);
+        stream.write(bytes);
+        stream.close();
+    }
+}
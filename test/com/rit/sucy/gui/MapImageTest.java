@@ -0,0 +1,43 @@
+package com.rit.sucy.gui;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * MCCore © 2017
+ * com.rit.sucy.gui.MapImageTest
+ */
+public class MapImageTest {
+
+    @Test
+    public void matchColor_transparent() {
+        Assert.assertEquals(0, MapImage.matchColor(new Color(255, 0, 0, 100)));
+        Assert.assertEquals(0, MapImage.matchColor(0x7FFFFFFF));
+    }
+
+    @Test
+    public void matchColor_errorBounded() {
+
+        // Colors are off from their lookup block center by at most 2 per channel
+        double blockError = Math.sqrt(MapImage.getDistance(0, 0, 0, 2, 2, 2));
+        double maxError = 0;
+
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            int r = random.nextInt(256);
+            int g = random.nextInt(256);
+            int b = random.nextInt(256);
+
+            Color match = MapImage.getColor(MapImage.matchColor(new Color(r, g, b)));
+            Color best = MapImage.getColor(MapImage.findClosest(r, g, b));
+            double error = Math.sqrt(MapImage.getDistance(r, g, b, match.getRed(), match.getGreen(), match.getBlue()))
+                    - Math.sqrt(MapImage.getDistance(r, g, b, best.getRed(), best.getGreen(), best.getBlue()));
+            maxError = Math.max(maxError, error);
+        }
+
+        Assert.assertTrue("Max error " + maxError, maxError <= 2 * blockError);
+    }
+}
@@ -0,0 +1,45 @@
+package com.rit.sucy.gui;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.*;
+
+/**
+ * MCCore © 2017
+ * com.rit.sucy.gui.MapStringCacheTest
+ */
+public class MapStringCacheTest {
+
+    private final MapFont font = new MapFont(new Font("Dialog", Font.PLAIN, 10), 1);
+
+    @Test
+    public void get_reusesSprites() {
+        MapStringCache.clear();
+        MapStringCache.resetStats();
+
+        MapString first = MapStringCache.get(font, (byte) 34, "Hello");
+        Assert.assertSame(first, MapStringCache.get(font, (byte) 34, "Hello"));
+        Assert.assertNotSame(first, MapStringCache.get(font, (byte) 35, "Hello"));
+
+        Assert.assertEquals(1, MapStringCache.getHits());
+        Assert.assertEquals(2, MapStringCache.getMisses());
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsed() {
+        MapStringCache.clear();
+        MapString a = MapStringCache.get(font, (byte) 34, "A");
+        MapString b = MapStringCache.get(font, (byte) 34, "B");
+        MapStringCache.get(font, (byte) 34, "A");
+
+        int limit = MapStringCache.getMaxSize();
+        MapStringCache.setMaxSize(MapStringCache.getSize() - 1);
+
+        Assert.assertEquals(1, MapStringCache.getCount());
+        Assert.assertSame(a, MapStringCache.get(font, (byte) 34, "A"));
+        Assert.assertNotSame(b, MapStringCache.get(font, (byte) 34, "B"));
+
+        MapStringCache.setMaxSize(limit);
+    }
+}
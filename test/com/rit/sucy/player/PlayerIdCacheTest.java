@@ -0,0 +1,91 @@
+package com.rit.sucy.player;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+/**
+ * MCCore © 2017
+ * com.rit.sucy.player.PlayerIdCacheTest
+ */
+public class PlayerIdCacheTest {
+
+    @After
+    public void tearDown() {
+        PlayerIdCache.shutdown();
+        PlayerIdCache.clear();
+        PlayerIdCache.resetStats();
+        PlayerIdCache.setMaxSize(100000);
+    }
+
+    @Test
+    public void put_isCaseInsensitive() {
+        UUID id = UUID.randomUUID();
+        PlayerIdCache.put("Steve", id);
+
+        Assert.assertEquals(id, PlayerIdCache.getUUID("steve"));
+        Assert.assertEquals(id, PlayerIdCache.getUUID("STEVE"));
+        Assert.assertEquals("Steve", PlayerIdCache.getName(id));
+    }
+
+    @Test
+    public void put_replacesOldName() {
+        UUID id = UUID.randomUUID();
+        PlayerIdCache.put("Steve", id);
+        PlayerIdCache.put("Alex", id);
+
+        Assert.assertNull(PlayerIdCache.getUUID("Steve"));
+        Assert.assertEquals(id, PlayerIdCache.getUUID("Alex"));
+        Assert.assertEquals("Alex", PlayerIdCache.getName(id));
+        Assert.assertEquals(1, PlayerIdCache.getCount());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        UUID id = UUID.randomUUID();
+        PlayerIdCache.setMaxSize(3);
+        PlayerIdCache.put("Steve", id);
+        PlayerIdCache.put("a", UUID.randomUUID());
+        PlayerIdCache.put("b", UUID.randomUUID());
+        PlayerIdCache.getUUID("steve");
+        PlayerIdCache.put("c", UUID.randomUUID());
+
+        Assert.assertEquals(3, PlayerIdCache.getCount());
+        Assert.assertNull(PlayerIdCache.getUUID("a"));
+        Assert.assertEquals(id, PlayerIdCache.getUUID("steve"));
+        Assert.assertEquals(1, PlayerIdCache.getEvictions());
+    }
+
+    @Test
+    public void resolve_remembersMissingNames() throws Exception {
+        Assert.assertNull(PlayerIdCache.resolveAsync("nobody").get());
+        Assert.assertTrue(PlayerIdCache.isMissing("NOBODY"));
+        Assert.assertNull(PlayerIdCache.resolve("nobody"));
+        Assert.assertEquals(1, PlayerIdCache.getLookups());
+    }
+
+    @Test
+    public void resolveAsync_completesCachedNames() throws Exception {
+        UUID id = UUID.randomUUID();
+        PlayerIdCache.put("Steve", id);
+
+        Future<UUID> future = PlayerIdCache.resolveAsync("steve");
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals(id, future.get());
+        Assert.assertEquals(0, PlayerIdCache.getLookups());
+    }
+
+    @Test
+    public void resolve_keepsInterruptFlag() {
+        Thread.currentThread().interrupt();
+        try {
+            Assert.assertNull(PlayerIdCache.resolve("someone"));
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.rit.sucy.player;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * MCCore © 2017
+ * com.rit.sucy.player.PlayerIdStoreTest
+ */
+public class PlayerIdStoreTest {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayerIdStoreTest");
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("uuids", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void load_readsDataAndLog() throws Exception {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        HashMap<UUID, String> initial = new HashMap<UUID, String>();
+        initial.put(a, "Alice");
+
+        PlayerIdStore store = new PlayerIdStore(folder, LOGGER);
+        store.replace(initial);
+        store.append(b, "Bob");
+        store.append(a, "Alicia");
+        store.close();
+
+        HashMap<UUID, String> loaded = reload();
+        Assert.assertEquals(2, loaded.size());
+        Assert.assertEquals("Alicia", loaded.get(a));
+        Assert.assertEquals("Bob", loaded.get(b));
+        Assert.assertFalse(new File(folder, "uuid.log").exists());
+    }
+
+    @Test
+    public void load_ignoresPartialLogRecord() throws Exception {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        File log = new File(folder, "uuid.log");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(log));
+        writeRecord(out, a, "Alice");
+        writeRecord(out, b, "Bob");
+        out.close();
+
+        RandomAccessFile file = new RandomAccessFile(log, "rw");
+        file.setLength(file.length() - 2);
+        file.close();
+
+        HashMap<UUID, String> loaded = reload();
+        Assert.assertEquals(1, loaded.size());
+        Assert.assertEquals("Alice", loaded.get(a));
+        Assert.assertEquals(1, reload().size());
+    }
+
+    @Test
+    public void compact_keepsUnreadableDataFile() throws Exception {
+        File data = new File(folder, "uuid.dat");
+        FileOutputStream out = new FileOutputStream(data);
+        out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        out.close();
+
+        PlayerIdStore store = new PlayerIdStore(folder, LOGGER);
+        Assert.assertTrue(store.load().isEmpty());
+        store.append(UUID.randomUUID(), "Alice");
+        store.close();
+
+        Assert.assertEquals(8, data.length());
+        Assert.assertTrue(new File(folder, "uuid.log").exists());
+    }
+
+    @Test
+    public void load_recoversTempFile() throws Exception {
+        UUID a = UUID.randomUUID();
+        HashMap<UUID, String> initial = new HashMap<UUID, String>();
+        initial.put(a, "Alice");
+        PlayerIdStore store = new PlayerIdStore(folder, LOGGER);
+        store.replace(initial);
+        store.close();
+
+        // A crash between removing the data file and renaming the new one
+        File data = new File(folder, "uuid.dat");
+        Assert.assertTrue(data.renameTo(new File(folder, "uuid.dat.tmp")));
+
+        HashMap<UUID, String> loaded = reload();
+        Assert.assertEquals("Alice", loaded.get(a));
+        Assert.assertTrue(data.exists());
+    }
+
+    private void writeRecord(DataOutputStream out, UUID id, String name) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+        out.writeUTF(name);
+    }
+
+    private HashMap<UUID, String> reload() {
+        PlayerIdStore store = new PlayerIdStore(folder, LOGGER);
+        HashMap<UUID, String> loaded = store.load();
+        store.close();
+        return loaded;
+    }
+}
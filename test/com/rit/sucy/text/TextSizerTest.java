@@ -0,0 +1,33 @@
+package com.rit.sucy.text;
+
+import org.bukkit.ChatColor;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * MCCore © 2017
+ * com.rit.sucy.text.TextSizerTest
+ */
+public class TextSizerTest {
+
+    @Test
+    public void measureString_plain() {
+        Assert.assertEquals(6 + 2 + 4 + 7, TextSizer.measureString("Hi ~"));
+    }
+
+    @Test
+    public void measureString_bold() {
+        Assert.assertEquals(7 + 3, TextSizer.measureString(ChatColor.COLOR_CHAR + "lHi"));
+        Assert.assertEquals(7 + 2, TextSizer.measureString(ChatColor.COLOR_CHAR + "lH" + ChatColor.COLOR_CHAR + "ri"));
+    }
+
+    @Test
+    public void measureString_colorCodes() {
+        Assert.assertEquals(6, TextSizer.measureString(ChatColor.COLOR_CHAR + "2H" + ChatColor.COLOR_CHAR));
+    }
+
+    @Test
+    public void measureString_nonAscii() {
+        Assert.assertEquals(12, TextSizer.measureString("é世"));
+    }
+}